@@ -21,7 +21,7 @@ def load_data():
                     'grid_size': int(grid_size),
                     'density': float(density),
                     'seed': int(seed),
-                    'time_ms': int(time_ms),
+                    'time_ms': float(time_ms),
                     'version': 'parallel'
                 })
     
@@ -37,7 +37,7 @@ def load_data():
                     'grid_size': int(grid_size),
                     'density': float(density),
                     'seed': int(seed),
-                    'time_ms': int(time_ms),
+                    'time_ms': float(time_ms),
                     'version': 'serial'
                 })
     
@@ -0,0 +1,226 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.*;
+
+// End-to-end timing of DungeonHunter (serial) and DungeonHunterParallel over a grid of configurations.
+// Each configuration gets warmup runs that are thrown away, then measured runs, optionally repeated
+// in forked JVMs so JIT and heap state do not carry over between configurations. A run is timed by
+// the program's own tick()/tock() interval read through System.nanoTime (startNanos/endNanos).
+//
+//   java -cp .:SoloLevelling:SoloLevellingParallel ProfileHarness [--versions=serial,parallel]
+//        [--grids=20,50] [--densities=0.05,0.2] [--seeds=42] [--warmup=3] [--iterations=10]
+//        [--forks=0] [--out=ProfileOutputs] [--args="--no-maps"]
+//
+// Defaults come from the dh.profile.* properties of the same names. --args is passed to the parallel
+// program only. Writes, in the output directory:
+//   <version>_tests_output.txt  the four column file GRAPH.py and GRAPH_OPTIMAL.py read, median time
+//   <version>_profile.csv       median, p95, mean, standard deviation and 95% CI of the mean per row
+//   <version>_profile.json      the same, with every sample
+public class ProfileHarness {
+    static final double[] T_975 = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042}; // two-sided 95%, df 1..30
+
+    static final String SAMPLE = "sample "; // a forked JVM's result lines on stdout
+
+    // one measured configuration
+    static class Result {
+        final String version;
+        final int size, seed;
+        final double density;
+        final double[] ms; // sorted
+
+        Result(String version, int size, double density, int seed, double[] ms) {
+            this.version = version;
+            this.size = size;
+            this.density = density;
+            this.seed = seed;
+            this.ms = ms.clone();
+            Arrays.sort(this.ms);
+        }
+
+        double median() {
+            int n = ms.length;
+            return n % 2 == 1 ? ms[n / 2] : (ms[n / 2 - 1] + ms[n / 2]) / 2;
+        }
+
+        double percentile(double p) { // nearest rank
+            return ms[Math.max(0, (int) Math.ceil(p * ms.length) - 1)];
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double t : ms) sum += t;
+            return sum / ms.length;
+        }
+
+        double stdev() {
+            if (ms.length < 2) return 0;
+            double mean = mean(), sum = 0;
+            for (double t : ms) sum += (t - mean) * (t - mean);
+            return Math.sqrt(sum / (ms.length - 1));
+        }
+
+        double halfWidth() { // of the 95% confidence interval of the mean, Student's t
+            int df = ms.length - 1;
+            if (df < 1) return 0;
+            double t = df <= T_975.length ? T_975[df - 1] : 1.96 + 2.5 / df;
+            return t * stdev() / Math.sqrt(ms.length);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Unknown argument: " + arg);
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "" : arg.substring(eq + 1));
+        }
+        List<String> versions = list(option(options, "versions", "serial,parallel"));
+        int[] grids = list(option(options, "grids", "20,50,100,300,500")).stream().mapToInt(Integer::parseInt).toArray();
+        double[] densities = list(option(options, "densities", "0.05,0.1,0.2,0.3,0.5,0.6,0.7,0.8,0.9"))
+                .stream().mapToDouble(Double::parseDouble).toArray();
+        int[] seeds = list(option(options, "seeds", "42")).stream().mapToInt(Integer::parseInt).toArray();
+        int warmup = Integer.parseInt(option(options, "warmup", "3"));
+        int iterations = Integer.parseInt(option(options, "iterations", "10"));
+        int forks = Integer.parseInt(option(options, "forks", "0"));
+        String extra = option(options, "args", "--no-maps");
+        File out = new File(option(options, "out", "ProfileOutputs"));
+        if (iterations < 1 || warmup < 0 || forks < 0) throw new IllegalArgumentException("Need --iterations >= 1, --warmup >= 0, --forks >= 0");
+
+        if (options.containsKey("child")) { // a forked JVM: one configuration, samples to stdout
+            String version = versions.get(0);
+            PrintStream stdout = System.out;
+            for (double ms : measure(version, grids[0], densities[0], seeds[0], warmup, iterations, extra)) stdout.println(SAMPLE + ms);
+            return;
+        }
+
+        out.mkdirs();
+        List<Result> results = new ArrayList<>();
+        for (String version : versions) {
+            for (int size : grids) {
+                for (double density : densities) {
+                    for (int seed : seeds) {
+                        double[] ms = forks == 0
+                                ? measure(version, size, density, seed, warmup, iterations, extra)
+                                : fork(version, size, density, seed, warmup, iterations, forks, extra);
+                        Result r = new Result(version, size, density, seed, ms);
+                        results.add(r);
+                        System.out.printf("%-8s %4d %.2f %d -> median %.3f ms, p95 %.3f ms, mean %.3f +/- %.3f ms (%d runs)%n",
+                                version, size, density, seed, r.median(), r.percentile(0.95), r.mean(), r.halfWidth(), r.ms.length);
+                    }
+                }
+            }
+        }
+        write(out, versions, results, warmup, iterations, forks);
+        System.out.println("Profiling complete. Results saved to " + out);
+    }
+
+    static String option(Map<String, String> options, String name, String fallback) {
+        String value = options.get(name);
+        return value != null ? value : System.getProperty("dh.profile." + name, fallback);
+    }
+
+    static List<String> list(String csv) {
+        List<String> items = new ArrayList<>();
+        for (String item : csv.split(",")) if (!item.isBlank()) items.add(item.trim());
+        return items;
+    }
+
+    // runs one configuration in this JVM; program output is discarded, maps included
+    static double[] measure(String version, int size, double density, int seed, int warmup, int iterations, String extra) throws Exception {
+        Class<?> program = Class.forName(version.equals("serial") ? "DungeonHunter" : "DungeonHunterParallel");
+        Method main = program.getDeclaredMethod("main", String[].class);
+        Field start = program.getDeclaredField("startNanos"), end = program.getDeclaredField("endNanos");
+        main.setAccessible(true);
+        start.setAccessible(true);
+        end.setAccessible(true);
+
+        List<String> argv = new ArrayList<>(List.of(String.valueOf(size), String.valueOf(density), String.valueOf(seed)));
+        if (!version.equals("serial") && !extra.isBlank()) argv.addAll(Arrays.asList(extra.trim().split("\\s+")));
+        String[] programArgs = argv.toArray(new String[0]);
+
+        double[] ms = new double[iterations];
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int run = -warmup; run < iterations; run++) {
+                System.gc(); // garbage of the previous run is not charged to this one
+                start.setLong(null, 0);
+                end.setLong(null, 0);
+                main.invoke(null, (Object) programArgs.clone());
+                long elapsed = end.getLong(null) - start.getLong(null);
+                if (start.getLong(null) == 0 || elapsed < 0) throw new IllegalStateException(program.getName() + " did not record its timing");
+                if (run >= 0) ms[run] = elapsed / 1e6;
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+        return ms;
+    }
+
+    // runs one configuration in `forks` fresh JVMs with this JVM's options and class path, pooling their samples
+    static double[] fork(String version, int size, double density, int seed, int warmup, int iterations, int forks, String extra) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(List.of(java));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "ProfileHarness", "--child",
+                "--versions=" + version, "--grids=" + size, "--densities=" + density, "--seeds=" + seed,
+                "--warmup=" + warmup, "--iterations=" + iterations, "--args=" + extra));
+
+        double[] ms = new double[forks * iterations];
+        int n = 0;
+        for (int f = 0; f < forks; f++) {
+            Process child = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    if (line.startsWith(SAMPLE) && n < ms.length) ms[n++] = Double.parseDouble(line.substring(SAMPLE.length()));
+                }
+            }
+            if (child.waitFor() != 0) throw new IOException("Forked JVM exited with " + child.exitValue() + ": " + String.join(" ", command));
+        }
+        if (n != ms.length) throw new IOException("Forked JVMs returned " + n + " of " + ms.length + " samples");
+        return ms;
+    }
+
+    static void write(File out, List<String> versions, List<Result> all, int warmup, int iterations, int forks) throws IOException {
+        for (String version : versions) {
+            List<Result> results = new ArrayList<>();
+            for (Result r : all) if (r.version.equals(version)) results.add(r);
+            write(out, version, results, warmup, iterations, forks);
+        }
+    }
+
+    static void write(File out, String version, List<Result> results, int warmup, int iterations, int forks) throws IOException {
+        try (PrintWriter w = new PrintWriter(new FileWriter(new File(out, version + "_tests_output.txt")))) {
+            w.println("Grid_Size, Density, Seed, Time_ms");
+            for (Result r : results) w.printf(Locale.ROOT, "%d, %s, %d, %.3f%n", r.size, r.density, r.seed, r.median());
+        }
+
+        try (PrintWriter w = new PrintWriter(new FileWriter(new File(out, version + "_profile.csv")))) {
+            w.println("version,grid_size,density,seed,runs,median_ms,p95_ms,mean_ms,stdev_ms,ci95_low_ms,ci95_high_ms,min_ms,max_ms");
+            for (Result r : results) {
+                w.printf(Locale.ROOT, "%s,%d,%s,%d,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f%n", r.version, r.size, r.density, r.seed,
+                        r.ms.length, r.median(), r.percentile(0.95), r.mean(), r.stdev(), r.mean() - r.halfWidth(), r.mean() + r.halfWidth(),
+                        r.ms[0], r.ms[r.ms.length - 1]);
+            }
+        }
+
+        try (PrintWriter w = new PrintWriter(new FileWriter(new File(out, version + "_profile.json")))) {
+            w.printf(Locale.ROOT, "{\"warmup\": %d, \"iterations\": %d, \"forks\": %d, \"results\": [%n", warmup, iterations, forks);
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                StringJoiner samples = new StringJoiner(", ", "[", "]");
+                for (double t : r.ms) samples.add(String.format(Locale.ROOT, "%.4f", t));
+                w.printf(Locale.ROOT, "  {\"version\": \"%s\", \"grid_size\": %d, \"density\": %s, \"seed\": %d, \"runs\": %d, "
+                                + "\"median_ms\": %.4f, \"p95_ms\": %.4f, \"mean_ms\": %.4f, \"stdev_ms\": %.4f, "
+                                + "\"ci95_low_ms\": %.4f, \"ci95_high_ms\": %.4f, \"samples_ms\": %s}%s%n",
+                        r.version, r.size, r.density, r.seed, r.ms.length, r.median(), r.percentile(0.95), r.mean(), r.stdev(),
+                        r.mean() - r.halfWidth(), r.mean() + r.halfWidth(), samples, i + 1 < results.size() ? "," : "");
+            }
+            w.println("]}");
+        }
+    }
+}
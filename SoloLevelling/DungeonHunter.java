@@ -28,8 +28,9 @@
 	 //timers for how long it all takes
 	 static long startTime = 0;
 	 static long endTime = 0;
-	 private static void tick() {startTime = System.currentTimeMillis(); }
-	 private static void tock(){endTime=System.currentTimeMillis(); }
+	 static long startNanos = 0, endNanos = 0; //the same interval from System.nanoTime, for ProfileHarness
+	 private static void tick() {startTime = System.currentTimeMillis(); startNanos = System.nanoTime(); }
+	 private static void tock(){endNanos = System.nanoTime(); endTime=System.currentTimeMillis(); }
  
 	 public static void main(String[] args)  {
 		 
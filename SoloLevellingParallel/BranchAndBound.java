@@ -0,0 +1,308 @@
+/**
+ * BranchAndBound.java
+ *
+ * Pruning for --strategy=bound. The dungeon is cut into TILE x TILE tiles, and the
+ * mana formula is bounded over each tile with interval arithmetic: every term is a
+ * bounded function (sin, cos, exp, 1/(1+d^2)) of arguments whose range over the tile
+ * follows from the per-row and per-column ManaKernel tables.
+ *
+ * Hunts keep a shared best-so-far peak. A hunt standing on a cell with mana m only
+ * climbs through cells above m, so it can only ever enter tiles whose upper bound is
+ * above m. If no path of such tiles leads to a tile whose upper bound reaches the best
+ * peak, the peak it would reach cannot beat it and the hunt is cut short - or skipped,
+ * when that already holds for the lower bound of its start tile. The highest level at
+ * which some path still gets through is the widest-path (bottleneck) distance from the
+ * promising tiles, computed once over the tile grid by prepare(), so each check is a
+ * single comparison. Only which tiles are promising depends on the best peak: the order
+ * of the sweep and the merges of its union-find are recorded by the constructor, before
+ * the search starts, and prepare() replays them.
+ *
+ * The reported maximum does not change: a hunt that stops on another hunt's path
+ * would have reached the same peak as that path, so the maximum over all hunts is
+ * the maximum over their peaks, whatever order they run in, and only hunts whose
+ * peak is strictly below an actually reported one are pruned.
+ */
+
+ import java.util.Arrays;
+ import java.util.concurrent.ForkJoinPool;
+ import java.util.concurrent.atomic.AtomicInteger;
+ import java.util.stream.IntStream;
+
+ class BranchAndBound {
+
+     static final int TILE_SHIFT = 3; //8x8 cells per tile
+     private static final double HALF_PI = Math.PI / 2;
+
+     private final int tileRows, tileColumns;
+     private final int[] upper; // per tile, fixed point: >= the mana of every cell in the tile
+     private final int[] lower; // per tile, fixed point: <= the mana of every cell in the tile
+     private final int hotUpper; // upper bound from which a tile counts as hot (top percent of tiles)
+     private final int[] merges; // the sweep's union-find merges, 4 ints each: tile, other root, last of each group
+     private final int mergeCount;
+     private final int[] next;   // group member lists of the sweep, in their final state
+     private final AtomicInteger best = new AtomicInteger(Integer.MIN_VALUE);
+     private volatile int[] escape; // per tile: hunts at or above this level cannot beat the best peak (prepare)
+
+     BranchAndBound(DungeonMapParallel dungeon) {
+         int rows = dungeon.getRows(), columns = dungeon.getColumns();
+         tileRows = (rows + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT;
+         tileColumns = (columns + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT;
+         upper = new int[tileRows * tileColumns];
+         lower = new int[upper.length];
+         ManaKernel k = dungeon.getKernel();
+         double[][][] xRanges = new double[tileRows][][], yRanges = new double[tileColumns][][];
+         for (int tr = 0; tr < tileRows; tr++) {
+             int x0 = tr << TILE_SHIFT, x1 = Math.min(rows, x0 + (1 << TILE_SHIFT)) - 1;
+             xRanges[tr] = new double[][] {range(k.xCoord, x0, x1), range(k.xCos5, x0, x1),
+                     sumRange(k.xHalf, k.xSin6, x0, x1), range(k.xOneHalf, x0, x1), range(k.xSin, x0, x1),
+                     range(k.xBossGap, x0, x1), range(k.xBossDist, x0, x1)};
+         }
+         for (int tc = 0; tc < tileColumns; tc++) {
+             int y0 = tc << TILE_SHIFT, y1 = Math.min(columns, y0 + (1 << TILE_SHIFT)) - 1;
+             yRanges[tc] = new double[][] {range(k.yCoord, y0, y1), range(k.ySin5, y0, y1),
+                     range(k.yThird, y0, y1), differenceRange(k.yCos4, k.yEighth, y0, y1), range(k.ySin, y0, y1),
+                     range(k.yLog, y0, y1), range(k.yBossGap, y0, y1), range(k.yBossDist, y0, y1)};
+         }
+         IntStream.range(0, upper.length).parallel()
+                 .forEach(t -> bound(t, xRanges[t / tileColumns], yRanges[t % tileColumns]));
+
+         long[] order = new long[upper.length];
+         for (int t = 0; t < upper.length; t++) order[t] = (long) upper[t] << 32 | t;
+         Arrays.parallelSort(order);
+         hotUpper = upper[(int) order[order.length - 1 - order.length / 100]];
+
+         next = new int[upper.length];
+         merges = new int[4 * upper.length];
+         mergeCount = sweep(order);
+     }
+
+     /*
+      * The target-independent part of prepare(): adds the tiles in decreasing upper bound,
+      * joining each to its neighbours already added, and records every merge of two groups
+      * with the last member of each, so a group's members at that time are its list up to it.
+      */
+     private int sweep(long[] order) {
+         int tiles = upper.length;
+         int[] parent = new int[tiles], last = new int[tiles];
+         boolean[] added = new boolean[tiles];
+         int count = 0;
+         for (int i = tiles - 1; i >= 0; i--) {
+             int t = (int) order[i];
+             parent[t] = t;
+             next[t] = -1;
+             last[t] = t;
+             added[t] = true;
+             int a = t; //root of t's group: stays the root as neighbours are appended
+             int tr = t / tileColumns, tc = t % tileColumns;
+             for (int r = Math.max(0, tr - 1); r <= Math.min(tileRows - 1, tr + 1); r++) {
+                 for (int c = Math.max(0, tc - 1); c <= Math.min(tileColumns - 1, tc + 1); c++) {
+                     int n = r * tileColumns + c;
+                     if (!added[n]) continue;
+                     int b = root(parent, n);
+                     if (a == b) continue;
+                     merges[4 * count] = a;
+                     merges[4 * count + 1] = b;
+                     merges[4 * count + 2] = last[a];
+                     merges[4 * count + 3] = last[b];
+                     count++;
+                     parent[b] = a; //append b's tiles to a's list
+                     next[last[a]] = b;
+                     last[a] = last[b];
+                 }
+             }
+         }
+         return count;
+     }
+
+     private int tileOf(int row, int column) {
+         return (row >> TILE_SHIFT) * tileColumns + (column >> TILE_SHIFT);
+     }
+
+     /** bounds of the tile holding (row, column), for validation: {lower, upper} */
+     int[] tileBounds(int row, int column) {
+         int tile = tileOf(row, column);
+         return new int[] {lower[tile], upper[tile]};
+     }
+
+     /** best peak reported so far */
+     int best() {
+         return best.get();
+     }
+
+     /** records the result of a finished hunt */
+     void offer(int power) {
+         if (power > best.get()) best.accumulateAndGet(power, Math::max); //most hunts end below the best: no write
+     }
+
+     /** whether the hunt starting at (row, column) should run in the first, best-first, phase */
+     boolean isHot(int row, int column) {
+         return upper[tileOf(row, column)] >= hotUpper;
+     }
+
+     /** a hunt starting anywhere in this tile cannot beat the best peak */
+     boolean canSkip(int row, int column) {
+         int tile = tileOf(row, column);
+         return canCut(row, column, lower[tile] - 1);
+     }
+
+     /** a hunt standing on (row, column) with mana level cannot beat the best peak */
+     boolean canCut(int row, int column, int level) {
+         int[] e = escape;
+         return e != null && level >= e[tileOf(row, column)];
+     }
+
+     /**
+      * Computes the escape levels for the current best peak. A hunt can beat it only through
+      * a path of neighbouring tiles, each above its level, to a tile whose upper bound reaches
+      * it, so a tile's escape level is the highest, over its neighbours, of the level up to which
+      * the neighbour is still connected to such a tile. Those levels come from one sweep over
+      * the tiles in decreasing upper bound, joining neighbours with a union-find: when a group
+      * first joins a promising one, the current upper bound is the connection level of all its
+      * tiles. The merges are the constructor's; only the promising flags are new. Call between
+      * phases; a higher best later only makes the levels conservative.
+      */
+     void prepare(ForkJoinPool pool) {
+         int target = best.get();
+         int tiles = upper.length;
+         int[] connected = new int[tiles]; // level up to which the tile reaches a promising tile
+         boolean[] promising = new boolean[tiles]; // per group root
+         for (int t = 0; t < tiles; t++) {
+             promising[t] = upper[t] >= target;
+             connected[t] = promising[t] ? upper[t] : Integer.MIN_VALUE;
+         }
+         for (int k = 0; k < 4 * mergeCount; k += 4) {
+             int a = merges[k], b = merges[k + 1];
+             if (promising[a] != promising[b]) { //the group left behind connects at this level
+                 int m = promising[a] ? b : a, last = merges[promising[a] ? k + 3 : k + 2];
+                 for (int level = upper[a]; ; m = next[m]) {
+                     connected[m] = level;
+                     if (m == last) break;
+                 }
+             }
+             promising[a] |= promising[b];
+         }
+
+         int[] e = new int[tiles];
+         pool.submit(() -> IntStream.range(0, tiles).parallel().forEach(t -> {
+             if (upper[t] >= target) {
+                 e[t] = Integer.MAX_VALUE; //could hold the best peak itself
+                 return;
+             }
+             int level = Integer.MIN_VALUE;
+             int tr = t / tileColumns, tc = t % tileColumns;
+             for (int r = Math.max(0, tr - 1); r <= Math.min(tileRows - 1, tr + 1); r++) {
+                 for (int c = Math.max(0, tc - 1); c <= Math.min(tileColumns - 1, tc + 1); c++) {
+                     int n = r * tileColumns + c;
+                     if (n != t) level = Math.max(level, connected[n]);
+                 }
+             }
+             e[t] = level;
+         })).join();
+         escape = e;
+     }
+
+     private static int root(int[] parent, int t) {
+         while (parent[t] != t) {
+             parent[t] = parent[parent[t]]; //path halving
+             t = parent[t];
+         }
+         return t;
+     }
+
+     /*
+      * Interval bound of ManaKernel.mana over tile t, from the ranges of the per-row (xr)
+      * and per-column (yr) table values over the tile, in the order the constructor lists
+      * them. Each argument range is the sum of the ranges of its parts; sin/cos ranges take
+      * the endpoints plus any extremum inside, widened for the rounding of the exact
+      * formula. The fixed-point bounds are widened by one unit each way.
+      */
+     private void bound(int t, double[][] xr, double[][] yr) {
+         double[] x = xr[0], xCos5 = xr[1], xHalfSin6 = xr[2], xOneHalf = xr[3], xSin = xr[4];
+         double[] y = yr[0], ySin5 = yr[1], yThird = yr[2], yCos4Eighth = yr[3], ySin = yr[4], yLog = yr[5];
+         double[] gap = add(xr[5], yr[6]);
+         double[] dist = add(xr[6], yr[7]);
+
+         double[] a = scale(multiply(sin(shift(add(x, ySin5), HALF_PI)),
+                 cos(scale(shift(add(y, xCos5), HALF_PI), 0.5))), 2);
+         double[] b = scale(sin(shift(add(xHalfSin6, yThird), HALF_PI)), 0.7);
+         double[] c = scale(sin(add(xOneHalf, yCos4Eighth)), 0.3);
+         double[] e = scale(sin(add(scale(multiply(x, y), 0.25), xSin)), 0.5);
+         double[] f = scale(cos(add(scale(add(x, y), 0.2), ySin)), 1.5);
+         double gapLow = 3.0 * Math.exp(-0.03 * gap[1]), gapHigh = 3.0 * Math.exp(-0.03 * gap[0]);
+         double distLow = 8.0 * Math.exp(-0.01 * dist[1]), distHigh = 8.0 * Math.exp(-0.01 * dist[0]);
+         double nearLow = 2.0 / (1.0 + 0.05 * dist[1]), nearHigh = 2.0 / (1.0 + 0.05 * dist[0]);
+
+         double high = a[1] + b[1] + c[1] + yLog[1] + e[1] + f[1] + gapHigh + distHigh + nearHigh;
+         double low = a[0] + b[0] + c[0] + yLog[0] + e[0] + f[0] + gapLow + distLow + nearLow;
+         high *= DungeonMapParallel.PRECISION;
+         low *= DungeonMapParallel.PRECISION;
+         upper[t] = (int) Math.ceil(high + Math.abs(high) * 1e-12) + 1;
+         lower[t] = (int) Math.floor(low - Math.abs(low) * 1e-12) - 1;
+     }
+
+     private static double[] range(double[] values, int from, int to) {
+         double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+         for (int i = from; i <= to; i++) {
+             min = Math.min(min, values[i]);
+             max = Math.max(max, values[i]);
+         }
+         return new double[] {min, max};
+     }
+
+     private static double[] sumRange(double[] p, double[] q, int from, int to) {
+         double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+         for (int i = from; i <= to; i++) {
+             min = Math.min(min, p[i] + q[i]);
+             max = Math.max(max, p[i] + q[i]);
+         }
+         return new double[] {min, max};
+     }
+
+     private static double[] differenceRange(double[] p, double[] q, int from, int to) {
+         double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+         for (int i = from; i <= to; i++) {
+             min = Math.min(min, p[i] - q[i]);
+             max = Math.max(max, p[i] - q[i]);
+         }
+         return new double[] {min, max};
+     }
+
+     private static double[] add(double[] p, double[] q) {
+         return new double[] {p[0] + q[0], p[1] + q[1]};
+     }
+
+     private static double[] shift(double[] p, double d) {
+         return new double[] {p[0] + d, p[1] + d};
+     }
+
+     private static double[] scale(double[] p, double s) { //s > 0
+         return new double[] {p[0] * s, p[1] * s};
+     }
+
+     private static double[] multiply(double[] p, double[] q) {
+         double v1 = p[0] * q[0], v2 = p[0] * q[1], v3 = p[1] * q[0], v4 = p[1] * q[1];
+         return new double[] {Math.min(Math.min(v1, v2), Math.min(v3, v4)), Math.max(Math.max(v1, v2), Math.max(v3, v4))};
+     }
+
+     // range of sin over [a, b], widened for argument rounding
+     private static double[] sin(double[] arg) {
+         double slack = 1e-9 * (1 + Math.max(Math.abs(arg[0]), Math.abs(arg[1])));
+         double a = arg[0] - slack, b = arg[1] + slack;
+         if (b - a >= 2 * Math.PI) return new double[] {-1, 1};
+         double sinA = Math.sin(a), sinB = Math.sin(b);
+         double lo = Math.min(sinA, sinB), hi = Math.max(sinA, sinB);
+         if (contains(a, b, HALF_PI)) hi = 1;
+         if (contains(a, b, -HALF_PI)) lo = -1;
+         return new double[] {lo - 1e-15, hi + 1e-15};
+     }
+
+     private static double[] cos(double[] arg) {
+         return sin(shift(arg, HALF_PI));
+     }
+
+     // does [a, b] contain point + 2 k pi for some integer k
+     private static boolean contains(double a, double b, double point) {
+         double k = Math.ceil((a - point) / (2 * Math.PI));
+         return point + 2 * Math.PI * k <= b;
+     }
+ }
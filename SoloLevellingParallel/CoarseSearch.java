@@ -0,0 +1,76 @@
+/**
+ * CoarseSearch.java
+ *
+ * Coarse-to-fine search for --strategy=coarse. Instead of climbing from random
+ * starts, a parallel pass evaluates the mana on a coarse lattice - one cell in every
+ * step x step block of the dungeon grid - and ranks the lattice points that are local
+ * maxima of the lattice. Full-resolution HuntParallel climbs then start only from
+ * the top-K of those, so most of the dungeon is never evaluated.
+ *
+ * This is a heuristic: a peak narrower than the lattice spacing can be missed,
+ * so the result is not guaranteed to match the Monte Carlo search (make compare-strategies).
+ */
+
+ import java.util.Arrays;
+ import java.util.concurrent.ForkJoinPool;
+ import java.util.stream.IntStream;
+
+ class CoarseSearch {
+
+     private final DungeonMapParallel dungeon;
+     private final int step;       // lattice spacing, in grid cells
+     private final int top;        // number of full-resolution climbs
+     private final int latticeRows, latticeColumns;
+
+     CoarseSearch(DungeonMapParallel dungeon, int step, int top) {
+         this.dungeon = dungeon;
+         this.step = Math.max(1, step);
+         this.top = Math.max(1, top);
+         latticeRows = (dungeon.getRows() + this.step - 1) / this.step;
+         latticeColumns = (dungeon.getColumns() + this.step - 1) / this.step;
+     }
+
+     int latticePoints() {
+         return latticeRows * latticeColumns;
+     }
+
+     // grid cell of lattice point (i, j): the middle of its block, clamped to the grid
+     private int cellOf(int i, int j) {
+         int row = Math.min(dungeon.getRows() - 1, i * step + step / 2);
+         int column = Math.min(dungeon.getColumns() - 1, j * step + step / 2);
+         return dungeon.cellIndex(row, column);
+     }
+
+     /**
+      * Evaluates the lattice and returns the cells of up to top lattice maxima, best first.
+      * Runs in pool, so the evaluations count against its workers.
+      */
+     int[] candidates(ForkJoinPool pool) {
+         int[] mana = new int[latticePoints()];
+         pool.submit(() -> IntStream.range(0, mana.length).parallel()
+                 .forEach(p -> mana[p] = dungeon.getManaLevel(cellOf(p / latticeColumns, p % latticeColumns))))
+                 .join();
+
+         long[] maxima = pool.submit(() -> IntStream.range(0, mana.length).parallel()
+                 .filter(p -> isLocalMaximum(mana, p))
+                 .mapToLong(p -> (long) mana[p] << 32 | cellOf(p / latticeColumns, p % latticeColumns))
+                 .toArray()).join();
+         Arrays.sort(maxima); //ascending mana: the best are at the end
+         int count = Math.min(top, maxima.length);
+         int[] cells = new int[count];
+         for (int k = 0; k < count; k++) cells[k] = (int) maxima[maxima.length - 1 - k];
+         return cells;
+     }
+
+     // at least as high as its 8 lattice neighbours; on a tie only the first in row-major order counts
+     private boolean isLocalMaximum(int[] mana, int p) {
+         int i = p / latticeColumns, j = p % latticeColumns;
+         for (int r = Math.max(0, i - 1); r <= Math.min(latticeRows - 1, i + 1); r++) {
+             for (int c = Math.max(0, j - 1); c <= Math.min(latticeColumns - 1, j + 1); c++) {
+                 int q = r * latticeColumns + c;
+                 if (mana[q] > mana[p] || (mana[q] == mana[p] && q < p)) return false;
+             }
+         }
+         return true;
+     }
+ }
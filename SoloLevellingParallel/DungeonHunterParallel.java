@@ -15,15 +15,21 @@
  * to locate the global maximum.
  *
  * Usage:
- *   java DungeonHunter <gridSize> <numSearches> <randomSeed>
+ *   java DungeonHunter <gridSize> <numSearches> <randomSeed> [--options]
+ * (see HuntOptions for the optional flags)
  *
  */
 
- import java.util.Random; //for the random search locations
+ import java.io.IOException;
+ import java.io.UncheckedIOException;
+ import java.nio.file.Paths;
+ import javax.management.JMException;
+ import java.util.Random; //seed for the random search locations when none is given
 
  // ADD -> MUST USE FORK?JOIN
  import java.util.concurrent.ForkJoinPool;
  import java.util.concurrent.RecursiveTask;
+ import java.util.stream.IntStream;
  
  class DungeonHunterParallel{
      static final boolean DEBUG=false;
@@ -31,8 +37,9 @@
      //timers for how long it all takes
      static long startTime = 0;
      static long endTime = 0;
-     private static void tick() {startTime = System.currentTimeMillis(); }
-     private static void tock(){endTime=System.currentTimeMillis(); }
+     static long startNanos = 0, endNanos = 0; //the same interval from System.nanoTime, for ProfileHarness
+     private static void tick() {startTime = System.currentTimeMillis(); startNanos = System.nanoTime(); }
+     private static void tock(){endNanos = System.nanoTime(); endTime=System.currentTimeMillis(); }
 
      // Compute an adaptive threshold so that the fork/join splits create roughly
      
@@ -123,16 +130,67 @@
              return threshold;
          }
  
+     /*
+      * Cost model for --strategy=auto. Hunts started at density d evaluate about
+      * 1 - exp(-dh.basinRate * d / RESOLUTION) of the cells (each new hunt lands in an
+      * unexplored cell with the probability of the unexplored share, and explores a
+      * roughly fixed number of cells there), in random order, at dh.huntCellNs per cell;
+      * the sweep evaluates all of them at dh.sweepCellNs each, plus dh.sweepSetupNs of
+      * fixed overhead (mostly warming up the vector kernel). The defaults are fitted to
+      * runs at grid sizes 100-500, densities 0.05-1.
+      */
+     static HuntOptions.Strategy chooseStrategy(long cells, double density) {
+         double basinRate = doubleProperty("dh.basinRate", 20);
+         double explored = 1 - Math.exp(-basinRate * density / DungeonMapParallel.RESOLUTION);
+         double huntNs = explored * cells * doubleProperty("dh.huntCellNs", 230);
+         double sweepNs = cells * doubleProperty("dh.sweepCellNs", 60) + doubleProperty("dh.sweepSetupNs", 400e6);
+         return sweepNs < huntNs ? HuntOptions.Strategy.SWEEP : HuntOptions.Strategy.HUNT;
+     }
+
+     // positive double from a dh.* system property, or fallback
+     private static double doubleProperty(String name, double fallback) {
+         String value = System.getProperty(name);
+         if (value != null) {
+             try {
+                 double parsed = Double.parseDouble(value.trim());
+                 if (parsed > 0) return parsed;
+             } catch (NumberFormatException ignored) { }
+         }
+         return fallback;
+     }
+
+     // positive int from a dh.* system property, or fallback
+     private static int intProperty(String name, int fallback) {
+         String value = System.getProperty(name);
+         if (value != null) {
+             try {
+                 int parsed = Integer.parseInt(value.trim());
+                 if (parsed > 0) return parsed;
+             } catch (NumberFormatException ignored) { }
+         }
+         return fallback;
+     }
+
      public static void main(String[] args)  {
          
          double xmin, xmax, ymin, ymax; //dungeon limits - dungeons are square
          DungeonMapParallel dungeon;  //object to store the dungeon as a grid
          
           int numSearches=10, gateSize= 10;		
-         HuntParallel [] searches;		// Array of searches
+          double density = 0;  //searches per grid cell, times RESOLUTION
+         HuntStore searches;		// all searches, struct-of-arrays
    
-         Random rand = new Random();  //the random number generator
+         long startSeed = new Random().nextLong();  //seed of the start positions' generator
            int randomSeed=0;  //set seed to have predictability for testing
+ 
+         HuntOptions options = null;
+         try {
+             options = HuntOptions.parse(args);
+         } catch (IllegalArgumentException e) {
+             System.err.println("Error: " + e.getMessage());
+             System.exit(1);
+         }
+         args = options.positional();
          
          if (args.length!=3) {
              System.out.println("Incorrect number of command line arguments provided.");
@@ -147,13 +205,14 @@
               throw new IllegalArgumentException("Grid size must be greater than 0.");
           }
          
-         numSearches = (int) (Double.parseDouble(args[1])*(gateSize*2)*(gateSize*2)*DungeonMapParallel.RESOLUTION);
+         density = Double.parseDouble(args[1]);
+         numSearches = (int) (density*(gateSize*2)*(gateSize*2)*DungeonMapParallel.RESOLUTION);
          
          randomSeed=Integer.parseInt( args[2] );
          if (randomSeed < 0) {
                  throw new IllegalArgumentException("Random seed must be non-negative.");
              }
-         else if(randomSeed>0)  rand = new Random(randomSeed);  // BUG FIX
+         else if(randomSeed>0)  startSeed = randomSeed;  // BUG FIX
          } catch (NumberFormatException e) {
              System.err.println("Error: All arguments must be numeric.");
              System.exit(1);
@@ -167,26 +226,100 @@
          xmax = gateSize;
          ymin = -gateSize;
          ymax = gateSize;
-         dungeon = new DungeonMapParallel(xmin,xmax,ymin,ymax,randomSeed); // Initialize dungeon
+         try {
+             dungeon = new DungeonMapParallel(xmin,xmax,ymin,ymax,randomSeed, options.gridBackend, options.gridFile); // Initialize dungeon
+         } catch (IllegalArgumentException e) {
+             System.err.println("Error: " + e.getMessage());
+             System.exit(1);
+             return;
+         }
          
-         int dungeonRows=dungeon.getRows();
-         int dungeonColumns=dungeon.getColumns();
-          searches= new HuntParallel [numSearches];
-          
+         dungeon.setManaMode(options.manaMode);
  
+         // --jmx: live progress for local JMX clients, from setup on
+         HuntProgress progress = null;
+         if (options.jmx) {
+             try {
+                 progress = HuntProgress.register(dungeon);
+                 System.out.println("Progress MBean " + HuntProgress.NAME + " in process " + ProcessHandle.current().pid());
+             } catch (JMException | SecurityException e) {
+                 System.err.println("Warning: could not register the progress MBean - running without it: " + e.getMessage());
+             }
+         }
  
-         for (int i=0;i<numSearches;i++)  //intialize searches at random locations in dungeon
-             searches[i]=new HuntParallel(i+1, rand.nextInt(dungeonRows),
-                     rand.nextInt(dungeonColumns),dungeon);
+         int dungeonRows=dungeon.getRows();
+         int dungeonColumns=dungeon.getColumns();
+          HuntOptions.Strategy strategy = options.strategy;
+          if (strategy == HuntOptions.Strategy.AUTO) strategy = chooseStrategy((long) dungeonRows * dungeonColumns, density);
+          // --mana-cache: values of earlier runs of this dungeon (the sweep never stores any in the grid)
+          long cacheStart = System.currentTimeMillis();
+          ManaCache cache = null;
+          if (options.manaCache != null && strategy != HuntOptions.Strategy.SWEEP) {
+              if (randomSeed == 0) {
+                  System.err.println("Warning: --mana-cache needs a fixed random seed - running without it");
+              } else {
+                  try {
+                      cache = ManaCache.open(options.manaCache, gateSize, randomSeed, dungeon);
+                      if (cache == null) System.err.println("Warning: mana cache in use by another run - running without it");
+                  } catch (IOException | UncheckedIOException e) {
+                      System.err.println("Warning: could not open mana cache - running without it: " + e.getMessage());
+                  }
+              }
+              dungeon.setCache(cache);
+          }
+          long cacheTime = System.currentTimeMillis() - cacheStart;
+          //intialize searches at random locations in dungeon - computed in parallel, on demand
+          long setupStart = System.currentTimeMillis();
+          searches = null; // --strategy=coarse picks its own starts, --strategy=sweep needs none
+          if (strategy != HuntOptions.Strategy.COARSE && strategy != HuntOptions.Strategy.SWEEP) {
+              StartPositions starts = new StartPositions(startSeed, numSearches, dungeonRows, dungeonColumns);
+              searches = new HuntStore(numSearches, starts);
+              if (options.order == HuntOptions.Order.MORTON) {
+                  try {
+                      searches.order = MortonOrder.schedule(starts, numSearches, dungeonRows, dungeonColumns);
+                  } catch (IllegalArgumentException e) {
+                      System.err.println("Warning: " + e.getMessage() + " - running the hunts in index order");
+                  }
+              }
+          }
+          // --scheduler=region: hunts bucketed by home region, one home worker per pool thread
+          RegionScheduler regions = searches != null && options.scheduler == HuntOptions.Scheduler.REGION
+                  ? new RegionScheduler(searches, dungeon, Runtime.getRuntime().availableProcessors(), intProperty("dh.regionsPerWorker", 4))
+                  : null;
+          long setupTime = System.currentTimeMillis() - setupStart;
+          // --strategy=bound: per-tile mana bounds, like the start positions a function of the dungeon only
+          long boundStart = System.currentTimeMillis();
+          BranchAndBound bound = strategy == HuntOptions.Strategy.BOUND ? new BranchAndBound(dungeon) : null;
+          long boundTime = System.currentTimeMillis() - boundStart;
+          // --strategy=coarse: lattice spacing in cells (default one dungeon unit) and number of climbs
+          CoarseSearch coarse = strategy == HuntOptions.Strategy.COARSE
+                  ? new CoarseSearch(dungeon, intProperty("dh.coarseStep", DungeonMapParallel.RESOLUTION), intProperty("dh.coarseTop", 64))
+                  : null;
+
+          // --autotune: grain size from the measured cost of a hunt, for plain SearchTask hunts only;
+          // the saved costs are read here, before the timer starts, the pilot runs on the pool
+          GrainTuner tuner = null;
+          int parallelism = Runtime.getRuntime().availableProcessors(); // that of new ForkJoinPool()
+          if (options.autotune && System.getProperty("dh.threshold") == null && strategy == HuntOptions.Strategy.HUNT
+                  && regions == null && numSearches / 16 >= parallelism) {
+              String tuneFile = System.getProperty("dh.autotuneFile");
+              String config = gateSize + "/" + density + "/" + options.manaMode + "/" + options.gridBackend + "/" + options.order;
+              tuner = new GrainTuner(tuneFile == null ? null : Paths.get(tuneFile), config, numSearches, parallelism,
+                      doubleProperty("dh.autotuneLeafNs", 2_000_000));
+          }
 
         //----------------------parallel implementation FORK JOIN------------------------------------
         // USE FORK JOIN replacement
         //move for better timing
 
+        Runnable stopWorkerEvents = HuntEvents.watch(dungeon); // dungeon.WorkerCounters, when recording with JFR
         tick(); // START timer - moved to just before parallel execution
          
             ForkJoinPool pool = new ForkJoinPool();
-            int adaptiveThreshold = computeOptimalThreshold(numSearches, pool);
+            if (progress != null) progress.started(pool, searches != null ? searches.size() : 0);
+            int adaptiveThreshold = tuner != null
+                    ? tuner.threshold(pool, searches, dungeon, intProperty("dh.autotunePilot", Math.min(numSearches / 16, 1024 * pool.getParallelism())))
+                    : computeOptimalThreshold(numSearches, pool);
             
             // Print threshold information for monitoring improvements
             int leafTasks = (int) Math.ceil(numSearches * 1.0 / Math.max(1, adaptiveThreshold));
@@ -195,15 +328,47 @@
             System.out.println("=== THRESHOLD ANALYSIS ===");
             System.out.println("Searches: " + numSearches);
             System.out.println("Parallelism: " + pool.getParallelism());
-            System.out.println("Threshold: " + adaptiveThreshold);
+            System.out.println("Threshold: " + adaptiveThreshold + (tuner != null ? " (autotuned: " + tuner.describe() + ")" : ""));
             System.out.println("Leaf tasks: " + leafTasks);
             System.out.println("Target tasks: " + targetTasks);
             System.out.println("Task efficiency: " + String.format("%.1f", (double)targetTasks / leafTasks * 100) + "%");
             System.out.println("==========================");
             
 
-            SearchTask mainTask = new SearchTask(searches, 0, numSearches, adaptiveThreshold);
-            SearchResult result = pool.invoke(mainTask);
+            SearchResult result;
+            if (bound != null) {
+                // hunts from the most promising tiles first, so the rest are pruned against a high best peak
+                SearchResult hot = runHunts(pool, regions, searches, dungeon, bound, true, adaptiveThreshold);
+                bound.prepare(pool);
+                SearchResult rest = runHunts(pool, regions, searches, dungeon, bound, false, adaptiveThreshold);
+                result = hot.max >= rest.max ? hot : rest;
+            } else if (coarse != null) {
+                // full-resolution climbs from the best coarse lattice maxima only
+                int[] cells = coarse.candidates(pool);
+                if (progress != null) progress.setSearchesTotal(cells.length);
+                HuntStore climbs = new HuntStore(cells.length, null);
+                int[] peaks = pool.submit(() -> IntStream.range(0, cells.length).parallel()
+                        .map(i -> new HuntParallel(climbs, dungeon, null).findManaPeak(i, dungeon.rowOf(cells[i]), dungeon.columnOf(cells[i])))
+                        .toArray()).join();
+                searches = climbs;
+                result = new SearchResult(Integer.MIN_VALUE, -1);
+                for (int i = 0; i < peaks.length; i++) {
+                    if (peaks[i] > result.max) result = new SearchResult(peaks[i], i);
+                }
+            } else if (strategy == HuntOptions.Strategy.SWEEP) {
+                // every cell in row tiles, parallel argmax
+                SearchResult peak = pool.invoke(new SweepSearch(dungeon, 0, dungeonRows));
+                searches = new HuntStore(1, null);
+                searches.finalCell[0] = peak.finder;
+                result = new SearchResult(peak.max, 0);
+            } else if (tuner != null && tuner.pilotEnd() > 0) {
+                // the pilot already ran the first hunts of the schedule
+                SearchResult pilot = tuner.pilotResult();
+                SearchResult rest = pool.invoke(new SearchTask(searches, dungeon, tuner.pilotEnd(), searches.size(), adaptiveThreshold));
+                result = rest.max > pilot.max ? rest : pilot;
+            } else {
+                result = runHunts(pool, regions, searches, dungeon, null, false, adaptiveThreshold);
+            }
 
             int max = result.max;
             int finder = result.finder;
@@ -211,6 +376,9 @@
             pool.shutdown();
 
             tock();
+            stopWorkerEvents.run();
+            if (tuner != null) tuner.finished(endNanos - startNanos);
+            if (progress != null) progress.finished();
 
             System.out.printf("\t dungeon size: %d,\n", gateSize);
             System.out.printf("\t rows: %d, columns: %d\n", dungeonRows, dungeonColumns);
@@ -219,23 +387,123 @@
     
             /*  Total computation time */
             System.out.printf("\n\t time: %d ms\n",endTime - startTime );
+            System.out.printf("\tstart positions setup: %d ms%s\n", setupTime,
+                    searches != null && searches.order != null ? " (including the Morton order sort)" : "");
             int tmp=dungeon.getGridPointsEvaluated();
-            System.out.printf("\tnumber dungeon grid points evaluated: %d  (%2.0f%s)\n",tmp,(tmp*1.0/(dungeonRows*dungeonColumns*1.0))*100.0, "%");
+            System.out.printf("\tnumber dungeon grid points evaluated: %d  (%2.0f%s)%s\n",tmp,(tmp*1.0/(dungeonRows*dungeonColumns*1.0))*100.0, "%",
+                    strategy == HuntOptions.Strategy.SWEEP ? " - swept, not stored in the grid" : "");
+            System.out.printf("\tgrid backend: %s, %.1f MB allocated\n", options.gridBackend, dungeon.getGridBytesAllocated() / (1024.0 * 1024.0));
+            HuntCounters.Snapshot counts = dungeon.getCounters().snapshot();
+            long totalSteps = counts.total(HuntCounters.Counter.STEPS);
+            System.out.printf("\thunt steps: %d  (%.1f ns/step)\n", totalSteps, (endTime - startTime) * 1e6 / Math.max(1, totalSteps));
+            System.out.printf("\tredundant evaluations: %d\n", counts.total(HuntCounters.Counter.REDUNDANT_EVALUATIONS));
+            System.out.printf("\tbasin map: %d hunts joined an earlier path, %d cells followed to resolve a peak\n",
+                    counts.total(HuntCounters.Counter.BASIN_JOINS), counts.total(HuntCounters.Counter.BASIN_WALKS));
+           if (options.manaMode == ManaKernel.Mode.FAST) {
+               long estimates = counts.total(HuntCounters.Counter.APPROX_EVALUATIONS);
+               long refinements = counts.total(HuntCounters.Counter.EXACT_REFINEMENTS);
+               System.out.printf("\tfast mana: %d estimates (+-%d), %d refined exactly (%.1f%%)\n",
+                       estimates, dungeon.getKernel().approxTolerance, refinements,
+                       100.0 * refinements / Math.max(1, estimates));
+           }
+           if (options.strategy == HuntOptions.Strategy.AUTO) {
+               System.out.printf("\tauto strategy: %s\n", strategy.name().toLowerCase());
+           }
+           if (regions != null) {
+               System.out.printf("\tregion scheduler: %d regions, %d stolen\n", regions.regions(), regions.steals());
+           }
+           if (coarse != null) {
+               System.out.printf("\tcoarse lattice: %d points, %d climbs from its best maxima\n",
+                       coarse.latticePoints(), searches.size());
+           }
+           if (bound != null) {
+               System.out.printf("\tbranch and bound: %d hunts skipped, %d cut short (tile bounds setup: %d ms)\n",
+                       counts.total(HuntCounters.Counter.HUNTS_SKIPPED), counts.total(HuntCounters.Counter.HUNTS_CUT), boundTime);
+           }
+           if (cache != null) {
+               long closeStart = System.currentTimeMillis();
+               try {
+                   cache.close();
+               } catch (IOException e) {
+                   System.err.println("Warning: could not close mana cache: " + e.getMessage());
+               }
+               long hits = counts.total(HuntCounters.Counter.CACHE_HITS);
+               System.out.printf("\tmana cache: %s%s, %d hits (%.1f%% of evaluated), %d blocks loaded, %d dropped (open %d ms, close %d ms)\n",
+                       cache.file(), cache.rebuilt() ? " (new)" : "", hits, 100.0 * hits / Math.max(1, tmp),
+                       cache.blocksLoaded(), cache.blocksDropped(), cacheTime, System.currentTimeMillis() - closeStart);
+           }
+            printWorkerBreakdown(counts);
     
             /* Results*/
             System.out.printf("Dungeon Master (mana %d) found at:  ", max );
-            System.out.printf("x=%.1f y=%.1f\n\n",dungeon.getXcoord(searches[finder].getPosRow()), dungeon.getYcoord(searches[finder].getPosCol()) );
-            dungeon.visualisePowerMap("visualiseSearch.png", false);
-            dungeon.visualisePowerMap("visualiseSearchPath.png", true);
+            int peak = searches.finalCell[finder];
+            System.out.printf("x=%.1f y=%.1f\n\n",dungeon.getXcoord(dungeon.rowOf(peak)), dungeon.getYcoord(dungeon.columnOf(peak)) );
+            if (options.writeMaps && strategy == HuntOptions.Strategy.SWEEP) {
+                System.out.println("\tmaps not written: --strategy=sweep keeps no mana values or paths in the grid");
+            } else if (options.writeMaps && options.tilesDir != null) {
+                long renderStart = System.currentTimeMillis();
+                MapTilePyramid tiles = new MapTilePyramid(dungeon, options.tilesDir);
+                try {
+                    tiles.write(ForkJoinPool.commonPool());
+                    System.out.printf("\tmap tiles: %d written to %s, %d levels, at most %d tiles in memory (%d ms)\n",
+                            tiles.tilesWritten(), options.tilesDir, tiles.levels(), tiles.peakTiles(),
+                            System.currentTimeMillis() - renderStart);
+                } catch (IOException | UncheckedIOException e) {
+                    System.err.println("Error: could not write map tiles: " + e.getMessage());
+                }
+            } else if (options.writeMaps && 2L * Integer.BYTES * dungeonRows * dungeonColumns > freeHeap()) {
+                System.out.printf("\tmaps not written: two %d x %d images need more heap than is free - use --tiles=<dir>\n",
+                        dungeonRows, dungeonColumns);
+            } else if (options.writeMaps) {
+                long renderStart = System.currentTimeMillis();
+                dungeon.visualisePowerMaps("visualiseSearch.png", "visualiseSearchPath.png");
+                System.out.printf("\tmaps rendered in %d ms\n", System.currentTimeMillis() - renderStart);
+            }
+    }
+
+    // heap still available to allocate, up to -Xmx
+    private static long freeHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    // all hunts (of one phase, with a bound) with the selected scheduler: regions, or SearchTask recursion if null
+    private static SearchResult runHunts(ForkJoinPool pool, RegionScheduler regions, HuntStore searches,
+            DungeonMapParallel dungeon, BranchAndBound bound, boolean hotPhase, int threshold) {
+        if (regions != null) return regions.run(pool, bound, hotPhase);
+        return pool.invoke(new SearchTask(searches, dungeon, bound, hotPhase, 0, searches.size(), threshold));
+    }
+
+    // per-worker share of the work - shows load imbalance between ForkJoin workers
+    private static void printWorkerBreakdown(HuntCounters.Snapshot counts) {
+        for (int w = 0; w < counts.workers(); w++) {
+            if (counts.isIdle(w)) continue;
+            String name = (w == counts.workers() - 1) ? "other" : "worker " + w;
+            System.out.printf("\t  %-9s evaluated %d, steps %d, redundant %d\n", name + ":",
+                    counts.get(w, HuntCounters.Counter.CELLS_EVALUATED),
+                    counts.get(w, HuntCounters.Counter.STEPS),
+                    counts.get(w, HuntCounters.Counter.REDUNDANT_EVALUATIONS));
+        }
     }
 
     static class SearchTask extends RecursiveTask<SearchResult> {
-        private HuntParallel[] searches;
+        private HuntStore searches;
+        private DungeonMapParallel dungeon;
+        private BranchAndBound bound; // --strategy=bound: prunes hunts, null otherwise
+        private boolean hotPhase;     // with a bound: run only the hunts starting in hot tiles, or only the others
         private int startIndex, endIndex;
         private int threshold; // Minimum work unit size for base case
 
-        public SearchTask(HuntParallel[] searches, int start, int end, int threshold) {
+        public SearchTask(HuntStore searches, DungeonMapParallel dungeon, int start, int end, int threshold) {
+            this(searches, dungeon, null, false, start, end, threshold);
+        }
+
+        public SearchTask(HuntStore searches, DungeonMapParallel dungeon, BranchAndBound bound, boolean hotPhase,
+                int start, int end, int threshold) {
             this.searches = searches;
+            this.dungeon = dungeon;
+            this.bound = bound;
+            this.hotPhase = hotPhase;
             this.startIndex = start;
             this.endIndex = end;
             this.threshold = Math.max(1, threshold);
@@ -247,26 +515,48 @@
             
             if (workSize <= threshold) {
                 // Base case: do the work directly
+                HuntEvents.LeafTask leaf = new HuntEvents.LeafTask(); // no-op unless a flight recording is running
+                leaf.begin();
                 int localMax = Integer.MIN_VALUE;
                 int localFinder = -1;
+                HuntParallel hunt = new HuntParallel(searches, dungeon, bound); // one hunt object per leaf, reused
+                MortonOrder order = searches.order; // schedule position i -> hunt, or null for hunt i
+                StartPositions.Cursor start = order == null ? searches.starts.from(startIndex) : null; // jump straight to this range
                 
                 for (int i = startIndex; i < endIndex; i++) {
-                    int result = searches[i].findManaPeak();
+                    int index = i, row, col;
+                    if (order == null) {
+                        row = start.row();
+                        col = start.column();
+                        start.advance();
+                    } else {
+                        index = order.index(i);
+                        row = order.row(i);
+                        col = order.column(i);
+                    }
+                    if (bound != null && bound.isHot(row, col) != hotPhase) continue; //other phase
+                    int result = hunt.findManaPeak(index, row, col);
                     if (result > localMax) {
                         localMax = result;
-                        localFinder = i;
+                        localFinder = index;
                     }
                     if (DEBUG) {
-                        System.out.println("Task: Shadow " + searches[i].getID() + 
-                                         " finished at " + result + " in " + searches[i].getSteps());
+                        System.out.println("Task: Shadow " + hunt.getID() + 
+                                         " finished at " + result + " in " + hunt.getSteps());
                     }
                 }
+                if (leaf.shouldCommit()) {
+                    leaf.startIndex = startIndex;
+                    leaf.hunts = workSize;
+                    leaf.max = localMax;
+                    leaf.commit();
+                }
                 return new SearchResult(localMax, localFinder);
             } else {
                 // Recursive case: split the work
                 int mid = startIndex + workSize / 2;
-                SearchTask leftTask = new SearchTask(searches, startIndex, mid, threshold);
-                SearchTask rightTask = new SearchTask(searches, mid, endIndex, threshold);
+                SearchTask leftTask = new SearchTask(searches, dungeon, bound, hotPhase, startIndex, mid, threshold);
+                SearchTask rightTask = new SearchTask(searches, dungeon, bound, hotPhase, mid, endIndex, threshold);
                 
                 // Fork the left task to run in parallel
                 leftTask.fork();
@@ -14,22 +14,34 @@
 
  import java.util.Random;
 
- import javax.imageio.ImageIO;
- 
- import java.awt.Color;
- import java.awt.image.BufferedImage;
- import java.io.File;
+ import java.nio.file.Path;
+ import java.util.concurrent.atomic.AtomicLong;
  
  public class DungeonMapParallel {
  
      public static final int PRECISION = 10000;
      public static final int RESOLUTION = 5;
+     // mana of the sentinel ring around the grid: below any real value, so a border cell never wins a step
+     static final int BORDER = ManaGrid.BORDER;
+
+     // neighbour order of the original getNextStepDirection:
+     // LEFT, RIGHT, UP, DOWN, UP_LEFT, UP_RIGHT, DOWN_LEFT, DOWN_RIGHT
+     private static final int[] NEIGHBOUR_DX = {-1, 1, 0, 0, -1, 1, -1, 1};
+     private static final int[] NEIGHBOUR_DY = {0, 0, -1, 1, -1, -1, 1, 1};
  
      private int rows, columns; //dungeonGrid size
+     private int stride; //cell index distance between rows of the grid
+     private int[] neighbourOffsets; //cell index offsets of the eight neighbours, in NEIGHBOUR_DX/DY order
      private double xmin, xmax, ymin, ymax; //x and y dungeon limits
-     private int [][] manaMap;
-     private int [][] visit;
-     private int dungeonGridPointsEvaluated; // Changed back to regular int
+     private ManaGrid grid; //mana and visit state, one flat cell index per grid point
+     private ManaKernel kernel; // per-row/per-column tables for the mana function
+     private ManaKernel.Mode manaMode = ManaKernel.Mode.SCALAR;
+     private HuntCounters counters; // striped per-worker counters - exact without a shared hot field
+     private ManaCache cache; // --mana-cache: exact values of earlier runs, null if off
+     static final long NO_PEAK = Long.MIN_VALUE;
+     private final AtomicLong bestPeak = new AtomicLong(NO_PEAK); // (mana << 32 | cell) of the best hunt so far, for HuntProgress
+     // per-thread scratch for the FAST mode, so a step allocates nothing
+     private final ThreadLocal<StepScratch> scratch = ThreadLocal.withInitial(StepScratch::new);
      private double bossX;
      private double bossY;
      private double decayFactor;  
@@ -38,6 +50,16 @@
      public DungeonMapParallel(	double xmin, double xmax, 
              double ymin, double ymax, 
              int seed) {
+         this(xmin, xmax, ymin, ymax, seed, ManaGrid.Backend.FLAT, null);
+     }
+ 
+     /**
+      * @param backend where the mana/visit state lives (heap, native memory or mapped file)
+      * @param gridFile backing file for the MAPPED backend
+      */
+     public DungeonMapParallel(	double xmin, double xmax, 
+             double ymin, double ymax, 
+             int seed, ManaGrid.Backend backend, Path gridFile) {
          super();
          this.xmin = xmin;
          this.xmax = xmax;
@@ -57,28 +79,76 @@
       // Calculate decay factor based on range
          this.decayFactor = 2.0 / (xRange * 0.1);  // adjust scaling factor to control width
  
-         manaMap = new int[rows][columns];
-         visit = new int[rows][columns];
-         dungeonGridPointsEvaluated = 0; // Changed back to regular int initialization
+         /* Terrain initialization - every cell starts unevaluated and unvisited,
+            inside a one-cell border ring (see fillBorder) */
+         kernel = new ManaKernel(xmin, xmax, ymin, ymax, rows, columns, bossX, bossY);
+         grid = ManaGrid.create(backend, rows + 2, columns + 2, gridFile);
+         stride = grid.stride();
+         neighbourOffsets = new int[NEIGHBOUR_DX.length];
+         for (int i = 0; i < neighbourOffsets.length; i++) {
+             neighbourOffsets[i] = NEIGHBOUR_DX[i] * stride + NEIGHBOUR_DY[i];
+         }
+         fillBorder();
+         counters = new HuntCounters(Runtime.getRuntime().availableProcessors());
+     }
+ 
+     // flat index of grid point (x, y) - row-major, so a row is contiguous.
+     // Rows and columns -1 and rows/columns are the border ring.
+     int cellIndex(int x, int y) {
+         return (x + 1) * stride + (y + 1);
+     }
  
-         /* Terrain initialization */
-         for(int i=0; i<rows; i++ ) {
-             for( int j=0; j<columns; j++ ) {
-                 manaMap[i][j] = Integer.MIN_VALUE;; //means mana not yet measured
-                 visit[i][j] = -1; //grid point not yet visited
-             }
+     int rowOf(int cell) { return cell / stride - 1; }
+ 
+     int columnOf(int cell) { return cell % stride - 1; }
+ 
+     /*
+      * Sentinel ring: every grid cell has all eight neighbours, so stepping needs no bounds
+      * checks, and a border cell's mana (BORDER) is never higher than the cell it is next to.
+      * A grid that answers BORDER for its edges by itself is left as it is.
+      */
+     private void fillBorder() {
+         if (grid.hasBorder()) return;
+         for (int x = -1; x <= rows; x++) {
+             grid.publishMana(cellIndex(x, -1), BORDER);
+             grid.publishMana(cellIndex(x, columns), BORDER);
+         }
+         for (int y = 0; y < columns; y++) {
+             grid.publishMana(cellIndex(-1, y), BORDER);
+             grid.publishMana(cellIndex(rows, y), BORDER);
          }
      }
  
      // has this site been visited before?
       boolean visited( int x, int y) {
-          if (visit[x][y]==-1) return false;
-          return true;
+          return visited(cellIndex(x, y));
  }
  
-      void setVisited( int x, int y, int id) {
-          if (visit[x][y]==-1) //don't reset
-              visit[x][y]= id;
+      boolean visited(int cell) {
+          return grid.getVisit(cell) != ManaGrid.UNVISITED;
+      }
+
+      /** mana stored for a cell, without evaluating it: ManaGrid.UNEVALUATED if none yet */
+      int storedMana(int cell) {
+          return grid.getMana(cell);
+      }
+
+      /** id of the hunt that claimed the cell, or ManaGrid.UNVISITED */
+      int owner(int cell) {
+          return grid.getVisit(cell);
+      }
+ 
+      /**
+       * Claims grid point (x, y) for hunt id - lock-free, so of all the hunts
+       * racing for a cell exactly one gets true.
+       * @return false if the cell was already visited (never reset)
+       */
+      boolean claim( int x, int y, int id) {
+          return claim(cellIndex(x, y), id);
+      }
+ 
+      boolean claim(int cell, int id) {
+          return grid.claimVisit(cell, id);
       }
  
       /**
@@ -90,176 +160,214 @@
           * @return A double value representing the mana value at (x, y).
           */
      int getManaLevel( int x, int y) {
-         if (visited(x,y)) return manaMap[x][y];  //don't recalculate 
-         if (manaMap[x][y]>Integer.MIN_VALUE) return manaMap[x][y];  //don't recalculate 
- 
-         /* Calculate the coordinates of the point in the ranges */
-         double x_coord = xmin + ( (xmax - xmin) / rows ) * x;
-         double y_coord = ymin + ( (ymax - ymin) / columns ) * y;
-         double dx = x_coord - bossX;
-         double dy = y_coord - bossY;
-         double distanceSquared = dx * dx + dy * dy;
-         
-         /* The function to compute the mana value value */
-         /*DO NOT CHANGE this - unless you are testing, but then put it back!*/
-         double mana = (2 * Math.sin(x_coord + 0.1 * Math.sin(y_coord / 5.0) + Math.PI / 2) *
-                 Math.cos((y_coord + 0.1 * Math.cos(x_coord / 5.0) + Math.PI / 2) / 2.0) +
-             0.7 * Math.sin((x_coord * 0.5) + (y_coord * 0.3) + 0.2 * Math.sin(x_coord / 6.0) + Math.PI / 2) +
-             0.3 * Math.sin((x_coord * 1.5) - (y_coord * 0.8) + 0.15 * Math.cos(y_coord / 4.0)) +
-             -0.2 * Math.log(Math.abs(y_coord - Math.PI * 2) + 0.1) +
-             0.5 * Math.sin((x_coord * y_coord) / 4.0 + 0.05 * Math.sin(x_coord)) +
-             1.5 * Math.cos((x_coord + y_coord) / 5.0 + 0.1 * Math.sin(y_coord)) +
-             3.0 * Math.exp(-0.03 * ((x_coord - bossX - 15) * (x_coord - bossX - 15) +
-                                     (y_coord - bossY + 10) * (y_coord - bossY + 10))) +
-             8.0 * Math.exp(-0.01 * distanceSquared) +                 
-             2.0 / (1.0 + 0.05 * distanceSquared)); 
-         
-         /* Transform to fixed point precision */
-         int fixedPoint = (int)( PRECISION * mana );
-         manaMap[x][y]=fixedPoint;
-         dungeonGridPointsEvaluated++; // Changed back to regular increment - this creates the race condition mentioned in the assignment
- 
-         return fixedPoint;
+         return getManaLevel(cellIndex(x, y));
+     }
+ 
+     /** mana of a cell by flat index; BORDER for the border ring */
+     int getManaLevel(int cell) {
+         int stored = grid.getMana(cell);
+         if (stored != ManaGrid.UNEVALUATED) return stored;  //don't recalculate 
+ 
+         int cached = fromCache(cell);
+         if (cached != ManaGrid.UNEVALUATED) return cached;
+
+         /* The mana function (DungeonMap.getManaLevel), with the per-axis terms precomputed */
+         int fixedPoint = kernel.fixedPoint(rowOf(cell), columnOf(cell));
+         if (cache != null) cache.put(rowOf(cell), columnOf(cell), fixedPoint);
+         return publish(cell, fixedPoint);
+     }
+
+     // the value an earlier run left in the mana cache, published to the grid, or UNEVALUATED
+     private int fromCache(int cell) {
+         if (cache == null) return ManaGrid.UNEVALUATED;
+         int value = cache.get(rowOf(cell), columnOf(cell));
+         if (value == ManaGrid.UNEVALUATED) return value;
+         counters.increment(HuntCounters.Counter.CACHE_HITS);
+         return publish(cell, value);
+     }
+ 
+     // another hunt may have computed the same (deterministic) value meanwhile - only the first publishes it
+     private int publish(int cell, int fixedPoint) {
+         if (grid.publishMana(cell, fixedPoint)) {
+             counters.increment(HuntCounters.Counter.CELLS_EVALUATED);
+             return fixedPoint;
+         }
+         counters.increment(HuntCounters.Counter.REDUNDANT_EVALUATIONS);
+         return grid.getMana(cell); //the published value wins
      }
  
      //work out where to go next - move in direction of highest mana
       /**
-      * Function to return the neighbouring cell direction with highest mana 
-      * @param x_coord The x-coordinate in the dungeon grid.
-      * @param y_coord The y-coordinate in the dungeon grid.
-      * @return the direction of highest mana.
+      * Hill-climbing step: the cell index offset to the neighbour with the highest mana,
+      * or 0 if no neighbour is higher than the cell itself (a local peak).
+      * Ties go to the first neighbour in NEIGHBOUR_DX/DY order, as in the original
+      * direction scan. The border ring makes every neighbour valid: no bounds checks,
+      * and nothing is allocated.
+      * @param cell flat index of the current position (cellIndex)
+      * @return offset to add to cell, one of neighbourOffsets, or 0 to stay
       */
-     HuntParallel.Direction getNextStepDirection( int x, int y) {
-         HuntParallel.Direction climbDirection = HuntParallel.Direction.STAY;
-         int localMax = getManaLevel(x, y);
- 
-         // Define directions with (dx, dy)
-         int[][] directions = {
-             {-1,  0}, // LEFT
-             { 1,  0}, // RIGHT
-             { 0, -1}, // UP
-             { 0,  1}, // DOWN
-             {-1, -1}, // UP_LEFT
-             { 1, -1}, // UP_RIGHT
-             {-1,  1}, // DOWN_LEFT
-             { 1,  1}  // DOWN_RIGHT
-         };
- 
-         HuntParallel.Direction[] directionEnums = {
-            HuntParallel.Direction.LEFT,
-            HuntParallel.Direction.RIGHT,
-            HuntParallel.Direction.UP,
-            HuntParallel.Direction.DOWN,
-            HuntParallel.Direction.UP_LEFT,
-            HuntParallel.Direction.UP_RIGHT,
-            HuntParallel.Direction.DOWN_LEFT,
-            HuntParallel.Direction.DOWN_RIGHT
-         };
- 
-         for (int i = 0; i < directions.length; i++) {
-             int newX = x + directions[i][0];
-             int newY = y + directions[i][1];
- 
-             if (newX >= 0 && newX < rows && newY >= 0 && newY < columns) {
-                 int power = getManaLevel(newX, newY);
-                 if (power > localMax) {
-                     localMax = power;
-                     climbDirection = directionEnums[i];
-                 }
+     int getNextStep(int cell) {
+         if (manaMode == ManaKernel.Mode.FAST) return getNextStepFast(cell, scratch.get());
+         int localMax = getManaLevel(cell);
+         int climb = 0;
+ 
+         for (int offset : neighbourOffsets) {
+             int power = getManaLevel(cell + offset);
+             if (power > localMax) {
+                 localMax = power;
+                 climb = offset;
              }
          }
  
-         return climbDirection;
+         return climb;
      }
  
      /**
-      * Generates an image from the dungeon grid.
-      * Unvisited cells are colored black, while visited cells follow a blackÃ¢â€ â€™purpleÃ¢â€ â€™redÃ¢â€ â€™white gradient.
-      *
-      * @param filename The name of the output PNG file.
+      * getNextStep on the fast tier: unevaluated neighbours are first estimated
+      * with kernel.approxFixedPoint, each estimate bracketing the exact value within
+      * +-approxTolerance. A neighbour whose upper bound is no higher than the current cell,
+      * or below another neighbour's lower bound, cannot be the one the exact scan picks;
+      * only the remaining candidates are evaluated exactly (and published), and the exact
+      * scan runs over those - so the chosen step, and every published value, is the
+      * same as with exact evaluation. Estimates are never published to the grid; each thread
+      * keeps the recent ones in a small cache, since consecutive steps share most neighbours.
       */
-     public void visualisePowerMap(String filename, boolean path) {
-         int width = manaMap.length;
-         int height = manaMap[0].length;
- 
-         //output image
-         BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
- 
-         // Find min and max for normalization (ignore unvisited sites)
-         int min = Integer.MAX_VALUE;
-         int max = Integer.MIN_VALUE;	    
-         
-         for (int x = 0; x < width; x++) {
-             for (int y = 0; y < height; y++) {
-                 int value = manaMap[x][y];
-                 if (value==Integer.MIN_VALUE)  continue; // ignore unvisited sites
-                 if (value < min) min = value;
-                 if (value > max) max = value;
+     private int getNextStepFast(int cell, StepScratch scratch) {
+         int localMax = getManaLevel(cell);
+         int[] estimate = scratch.neighbours;
+ 
+         int exact = 0; //bit i set: estimate[i] is the published exact value
+         for (int i = 0; i < neighbourOffsets.length; i++) {
+             int neighbour = cell + neighbourOffsets[i];
+             int stored = grid.getMana(neighbour);
+             if (stored != ManaGrid.UNEVALUATED) { //includes the border
+                 estimate[i] = stored;
+                 exact |= 1 << i;
+             } else {
+                 estimate[i] = scratch.estimate(neighbour);
              }
          }
-         // Prevent division by zero if everything has the same value
-         double range = (max > min) ? (max - min) : 1.0;
- 
-         // Map height values to colors
-         for (int x = 0; x < width; x++) {
-             for (int y = 0; y < height; y++) {
-                 Color color;
- 
-                 if (path && !visited(x, y)) color = Color.BLACK; //view path only, all not visited black
-                 else if (manaMap[x][y]==Integer.MIN_VALUE) color = Color.BLACK; // not evaluated black
-                 else {
-                     double normalized = (manaMap[x][y] - min) / range; // 0Ã¢â‚¬â€œ1
-                     color = mapHeightToColor(normalized);
-                 }
-                 image.setRGB(x, height - 1 - y, color.getRGB());
+
+         int tolerance = kernel.approxTolerance;
+         int bestLower = Integer.MIN_VALUE;
+         for (int i = 0; i < neighbourOffsets.length; i++) {
+             bestLower = Math.max(bestLower, (exact & (1 << i)) != 0 ? estimate[i] : estimate[i] - tolerance);
+         }
+
+         int climb = 0;
+         for (int i = 0; i < neighbourOffsets.length; i++) {
+             boolean known = (exact & (1 << i)) != 0;
+             int upper = known ? estimate[i] : estimate[i] + tolerance;
+             if (upper <= localMax || upper < bestLower) continue; //cannot be the highest
+             int power = estimate[i];
+             if (!known) {
+                 counters.increment(HuntCounters.Counter.EXACT_REFINEMENTS);
+                 power = getManaLevel(cell + neighbourOffsets[i]);
+             }
+             if (power > localMax) {
+                 localMax = power;
+                 climb = neighbourOffsets[i];
              }
          }
-         try {
-             File output = new File(filename);
-             ImageIO.write(image, "png", output);
-             System.out.println("map saved to " + filename);
-         } catch (Exception e) {
-             e.printStackTrace();
+         return climb;
+     }
+ 
+     // per-thread step buffers, plus a direct-mapped cell -> estimate cache for the FAST mode
+     private final class StepScratch {
+         private static final int BITS = 8;
+         final int[] neighbours = new int[8];
+         private final int[] cells = new int[1 << BITS];
+         private final int[] estimates = new int[1 << BITS];
+ 
+         StepScratch() {
+             java.util.Arrays.fill(cells, -1);
+         }
+ 
+         int estimate(int cell) {
+             int slot = (cell * 0x9E3779B9) >>> (32 - BITS);
+             if (cells[slot] == cell) return estimates[slot];
+             int value = kernel.approxFixedPoint(rowOf(cell), columnOf(cell));
+             counters.increment(HuntCounters.Counter.APPROX_EVALUATIONS);
+             cells[slot] = cell;
+             estimates[slot] = value;
+             return value;
          }
      }
  
      /**
-      * Maps normalized height [0..1] to black Ã¢â€ â€™ purple Ã¢â€ â€™ red Ã¢â€ â€™ white.
+      * Generates an image from the dungeon grid.
+      * Unvisited cells are colored black, while visited cells follow a black-purple-red-white gradient.
+      *
+      * @param filename The name of the output PNG file.
+      */
+     public void visualisePowerMap(String filename, boolean path) {
+         PowerMapRenderer renderer = new PowerMapRenderer(this);
+         if (path) renderer.write(null, filename);
+         else renderer.write(filename, null);
+     }
+
+     /**
+      * The full map and the path-only map in one parallel rendering pass (PowerMapRenderer).
       */
-     private Color mapHeightToColor(double normalized) {
-         normalized = Math.max(0, Math.min(1, normalized)); // clamp to [0,1]
- 
-         int r = 0, g = 0, b = 0;
- 
-         if (normalized < 0.33) {
-             // Black -> Purple
-             double t = normalized / 0.33;
-             r = (int) (128 * t); // purple has some red
-             g = 0;
-             b = (int) (128 + 127 * t); // increasing blue
-         } 
-         else if (normalized < 0.66) {
-             // Purple -> Red
-             double t = (normalized - 0.33) / 0.33;
-             r = (int) (128 + 127 * t); // red dominates
-             g = 0;
-             b = (int) (255 - 255 * t); // fade out blue
-         } 
-         else {
-             // Red -> White
-             double t = (normalized - 0.66) / 0.34;
-             r = 255;
-             g = (int) (255 * t);
-             b = (int) (255 * t);
-         }
- 
-         return new Color(r, g, b);
+     public void visualisePowerMaps(String mapFile, String pathFile) {
+         new PowerMapRenderer(this).write(mapFile, pathFile);
+     }
+
+     /** bytes held by the grid backend (grows with the explored area for SPARSE) */
+     public long getGridBytesAllocated() {
+         return grid.allocatedBytes();
      }
  
      public int getGridPointsEvaluated() {
-        return dungeonGridPointsEvaluated; // Changed back to regular return
+        return (int) counters.sum(HuntCounters.Counter.CELLS_EVALUATED);
     }
  
+     /** SCALAR (default) or FAST estimates */
+     void setManaMode(ManaKernel.Mode mode) {
+         this.manaMode = mode;
+     }
+ 
+     /** consult cache before computing a cell and write computed exact values to it; null for none */
+     void setCache(ManaCache cache) {
+         this.cache = cache;
+     }
+
+     // a hunt ended at cell with this mana: kept if it beats the best so far.
+     // One read per hunt; the CAS runs only on an improvement, which gets rare quickly
+     void offerPeak(int mana, int cell) {
+         long packed = (long) mana << 32 | (cell & 0xffffffffL);
+         if (packed > bestPeak.get()) bestPeak.accumulateAndGet(packed, Math::max);
+     }
+
+     /** the best (mana, cell) offered so far, packed - see peakMana/peakCell - or NO_PEAK */
+     long bestPeak() {
+         return bestPeak.get();
+     }
+
+     static int peakMana(long peak) { return (int) (peak >> 32); }
+
+     static int peakCell(long peak) { return (int) peak; }
+
+     /**
+      * Identifies this dungeon's mana function for ManaCache: the limits, the grid size
+      * and the boss peak, which together with ManaCache.VERSION determine every value.
+      */
+     long manaFingerprint() {
+         long h = 31L * rows + columns;
+         for (double v : new double[] {xmin, xmax, ymin, ymax, bossX, bossY, decayFactor}) {
+             h = 31 * h + Double.doubleToLongBits(v);
+         }
+         return h;
+     }
+
+     ManaKernel getKernel() {
+         return kernel;
+     }
+ 
+     HuntCounters getCounters() {
+         return counters;
+     }
+ 
      public double getXcoord(int x) {
          return xmin + ( (xmax - xmin) / rows ) * x;
      }
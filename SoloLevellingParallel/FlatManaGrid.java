@@ -0,0 +1,44 @@
+/**
+ * FlatManaGrid.java
+ *
+ * Default ManaGrid backend: one flat int[] per plane, row-major
+ * (cell = row * columns + column), so neighbouring cells in a row share cache lines.
+ */
+
+ import java.lang.invoke.MethodHandles;
+ import java.lang.invoke.VarHandle;
+ import java.util.Arrays;
+
+ class FlatManaGrid implements ManaGrid {
+
+     private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+     private final int stride;
+     private final int[] mana;
+     private final int[] visit;
+
+     FlatManaGrid(int rows, int columns) {
+         int cells = Math.multiplyExact(rows, columns);
+         stride = columns;
+         mana = new int[cells];
+         visit = new int[cells];
+         Arrays.fill(mana, UNEVALUATED);
+         Arrays.fill(visit, UNVISITED);
+     }
+
+     public int getMana(int cell) { return (int) CELL.getAcquire(mana, cell); }
+
+     public boolean publishMana(int cell, int value) {
+         return CELL.compareAndSet(mana, cell, UNEVALUATED, value);
+     }
+
+     public int getVisit(int cell) { return visit[cell]; }
+
+     public boolean claimVisit(int cell, int id) {
+         return CELL.compareAndSet(visit, cell, UNVISITED, id);
+     }
+
+     public int stride() { return stride; }
+
+     public long allocatedBytes() { return 2L * mana.length * Integer.BYTES; }
+ }
@@ -0,0 +1,166 @@
+/**
+ * GrainTuner.java
+ *
+ * Measured grain size for the SearchTask recursion, for --autotune. Instead of the
+ * fixed tasks-per-worker heuristics of computeOptimalThreshold, it times what a hunt
+ * actually costs at this grid size and density and picks the largest leaf (threshold)
+ * that still
+ *   - runs for about dh.autotuneLeafNs (default 2 ms). The fork/join overhead of a leaf
+ *     is a few microseconds, but each leaf also sets up a hunt object and a start cursor
+ *     and is joined up the tree; leaves of 250 us came out at a handful of hunts and made
+ *     tuned runs slower, while at 2 ms all of it stays well under 1%, and
+ *   - leaves at least MIN_LEAVES_PER_WORKER leaves per worker, so the last leaves still
+ *     balance the load.
+ * On small runs - less than about parallelism * MIN_LEAVES_PER_WORKER * 2 ms of hunting,
+ * e.g. under 32 ms of work on 4 workers - the second limit is the one that binds: the
+ * leaves come out shorter than the target, and the threshold is the same as a plain
+ * MIN_LEAVES_PER_WORKER split.
+ *
+ * The cost comes from a pilot: the first dh.autotunePilot hunts of the schedule (default
+ * 1/16 of them, at most 1024 per worker), run for real in small leaves, so no work is
+ * wasted. Only the second half is timed, after the first has warmed up the JIT. Early
+ * hunts still climb a nearly empty grid, so the pilot overestimates the average and errs
+ * towards smaller leaves. With dh.autotuneFile set,
+ * the average cost over the whole run is saved per host and configuration, and later
+ * runs of that configuration take their threshold from it without a pilot.
+ */
+
+ import java.io.IOException;
+ import java.io.InputStream;
+ import java.io.OutputStream;
+ import java.net.InetAddress;
+ import java.nio.file.Files;
+ import java.nio.file.Path;
+ import java.nio.file.StandardCopyOption;
+ import java.util.Locale;
+ import java.util.Properties;
+ import java.util.concurrent.ForkJoinPool;
+
+ class GrainTuner {
+
+     static final int MIN_LEAVES_PER_WORKER = 4;
+     private static final int PILOT_LEAVES_PER_WORKER = 8;
+
+     private final Path file; // dh.autotuneFile, null to tune every run and save nothing
+     private final String key;
+     private final int searches, parallelism;
+     private final double leafNs;
+
+     private final Double saved; // worker-nanoseconds per hunt saved by an earlier run, or null
+     private double huntNs;   // worker-nanoseconds per hunt the threshold was derived from
+     private String source;   // "pilot" or "saved"
+     private int pilotEnd;    // schedule positions [0, pilotEnd) already run by the pilot
+     private DungeonHunterParallel.SearchResult pilotResult;
+
+     /**
+      * @param config the settings that change the cost of a hunt (grid size, density, mana mode ...),
+      *               part of the key the tuned cost is saved under
+      */
+     GrainTuner(Path file, String config, int searches, int parallelism, double leafNs) {
+         this.file = file;
+         this.key = file == null ? null : host() + "/" + parallelism + "/" + config;
+         this.searches = searches;
+         this.parallelism = Math.max(1, parallelism);
+         this.leafNs = leafNs;
+         this.saved = load();
+     }
+
+     /**
+      * The threshold for this run: from the saved cost if there is one, else from a pilot
+      * that runs the first hunts of the schedule on pool - the rest start at pilotEnd().
+      */
+     int threshold(ForkJoinPool pool, HuntStore store, DungeonMapParallel dungeon, int pilotSize) {
+         if (saved != null) {
+             huntNs = saved;
+             source = "saved";
+         } else {
+             // two rounds: the first warms up the JIT and the grid, only the second is timed
+             pilotEnd = Math.min(searches, pilotSize);
+             int half = pilotEnd / 2, timed = pilotEnd - half;
+             int leaf = Math.max(1, timed / (parallelism * PILOT_LEAVES_PER_WORKER));
+             DungeonHunterParallel.SearchResult first = pool.invoke(new DungeonHunterParallel.SearchTask(store, dungeon, 0, half, leaf));
+             long start = System.nanoTime();
+             DungeonHunterParallel.SearchResult second = pool.invoke(new DungeonHunterParallel.SearchTask(store, dungeon, half, pilotEnd, leaf));
+             huntNs = (System.nanoTime() - start) * (double) Math.min(parallelism, timed) / Math.max(1, timed);
+             pilotResult = second.max > first.max ? second : first;
+             source = "pilot";
+         }
+         return threshold(huntNs);
+     }
+
+     private int threshold(double costNs) {
+         int remaining = Math.max(1, searches - pilotEnd);
+         long grain = (long) Math.ceil(leafNs / Math.max(1, costNs));
+         long balanced = (long) Math.ceil((double) remaining / (parallelism * MIN_LEAVES_PER_WORKER));
+         return (int) Math.max(1, Math.min(Math.min(grain, balanced), remaining));
+     }
+
+     int pilotEnd() {
+         return pilotEnd;
+     }
+
+     /** the pilot's best hunt, or null without a pilot */
+     DungeonHunterParallel.SearchResult pilotResult() {
+         return pilotResult;
+     }
+
+     String describe() {
+         return String.format(Locale.ROOT, "%s, %.0f ns per hunt%s", source, huntNs,
+                 pilotEnd > 0 ? " over the first " + pilotEnd + " hunts" : "");
+     }
+
+     /**
+      * The search took searchNanos in all: saves its average cost per hunt, the better
+      * estimate for the next run, if there is a file to save it to.
+      */
+     void finished(long searchNanos) {
+         if (file == null || searches == 0) return;
+         double averageNs = searchNanos * (double) Math.min(parallelism, searches) / searches;
+         try {
+             Properties tuned = read();
+             tuned.setProperty(key, String.format(Locale.ROOT, "%.1f", averageNs));
+             Path dir = file.toAbsolutePath().getParent();
+             Files.createDirectories(dir);
+             Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+             try (OutputStream out = Files.newOutputStream(temp)) {
+                 tuned.store(out, "GrainTuner: worker-nanoseconds per hunt, by host/parallelism/configuration");
+             }
+             Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         } catch (IOException e) {
+             System.err.println("Warning: could not save the autotuned grain size: " + e.getMessage());
+         }
+     }
+
+     private Double load() {
+         if (file == null || !Files.exists(file)) return null;
+         try {
+             String value = read().getProperty(key);
+             if (value == null) return null;
+             double parsed = Double.parseDouble(value);
+             return parsed > 0 ? parsed : null;
+         } catch (IOException | NumberFormatException e) {
+             System.err.println("Warning: ignoring autotune file " + file + ": " + e.getMessage());
+             return null;
+         }
+     }
+
+     private Properties read() throws IOException {
+         Properties tuned = new Properties();
+         if (Files.exists(file)) {
+             try (InputStream in = Files.newInputStream(file)) {
+                 tuned.load(in);
+             }
+         }
+         return tuned;
+     }
+
+     private static String host() {
+         String host = System.getenv("HOSTNAME");
+         if (host != null && !host.isEmpty()) return host;
+         try {
+             return InetAddress.getLocalHost().getHostName();
+         } catch (IOException e) {
+             return "localhost";
+         }
+     }
+ }
@@ -0,0 +1,113 @@
+/**
+ * HuntCounters.java
+ *
+ * Exact event counters for a parallel hunt that do not funnel every core
+ * through one shared cache line.
+ *
+ * Each ForkJoin worker adds into its own stripe (picked from its pool index), and
+ * stripes are padded to 128 bytes so two workers never write the same cache line.
+ * Adds are atomic, so the totals stay exact even when two threads hash to the same
+ * stripe (threads outside the pool share the last one); without contention an
+ * atomic add on a private line costs about as much as a plain increment.
+ * Totals are summed on demand by snapshot().
+ */
+
+ import java.lang.invoke.MethodHandles;
+ import java.lang.invoke.VarHandle;
+ import java.util.concurrent.ForkJoinWorkerThread;
+
+ class HuntCounters {
+
+     enum Counter {
+         CELLS_EVALUATED,       // mana values computed and published
+         STEPS,                 // cells claimed by hunts
+         REDUNDANT_EVALUATIONS, // mana values computed but already published by another hunt
+         APPROX_EVALUATIONS,    // fast-tier estimates (--mana=fast)
+         EXACT_REFINEMENTS,     // fast-tier candidates that had to be evaluated exactly
+         HUNTS_SKIPPED,         // --strategy=bound: hunts not started, their tile cannot beat the best peak
+         HUNTS_CUT,             // --strategy=bound: hunts stopped once their climb cannot beat it
+         BASIN_JOINS,           // hunts that reached an earlier path and took its peak from the basin map
+         BASIN_WALKS,           // cells followed along an earlier path whose hunt had no peak yet
+         CACHE_HITS,            // --mana-cache: mana values taken from an earlier run instead of computed
+         HUNTS_COMPLETED        // hunts finished, skipped ones included - live progress for HuntProgress
+     }
+
+     private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+     private static final int STRIPE = 16; // longs per stripe: 128 bytes, covers adjacent-line prefetch
+     private static final int COUNTERS = Counter.values().length;
+
+     private final int workerStripes; // power of two, >= the pool indices we expect
+     private final long[] stripes;    // stripe s starts at (s + 1) * STRIPE - first stripe is padding
+
+     /** @param parallelism expected number of worker threads */
+     HuntCounters(int parallelism) {
+         int pow2 = Integer.highestOneBit(Math.max(1, parallelism - 1)) << 1;
+         workerStripes = pow2 * 2; // pool indices can run up to twice the parallelism
+         stripes = new long[(workerStripes + 2) * STRIPE];
+     }
+
+     private int stripe() {
+         Thread t = Thread.currentThread();
+         if (t instanceof ForkJoinWorkerThread) {
+             return ((ForkJoinWorkerThread) t).getPoolIndex() & (workerStripes - 1);
+         }
+         return workerStripes; // all other threads
+     }
+
+     void increment(Counter counter) {
+         add(counter, 1);
+     }
+
+     void add(Counter counter, long amount) {
+         LONGS.getAndAdd(stripes, (stripe() + 1) * STRIPE + counter.ordinal(), amount);
+     }
+
+     long sum(Counter counter) {
+         long total = 0;
+         for (int s = 0; s <= workerStripes; s++) {
+             total += (long) LONGS.getVolatile(stripes, (s + 1) * STRIPE + counter.ordinal());
+         }
+         return total;
+     }
+
+     /** Totals plus the per-worker breakdown; exact once the hunts have finished. */
+     Snapshot snapshot() {
+         long[][] perWorker = new long[workerStripes + 1][COUNTERS];
+         for (int s = 0; s <= workerStripes; s++) {
+             for (int c = 0; c < COUNTERS; c++) {
+                 perWorker[s][c] = (long) LONGS.getVolatile(stripes, (s + 1) * STRIPE + c);
+             }
+         }
+         return new Snapshot(perWorker);
+     }
+
+     static class Snapshot {
+         private final long[][] perWorker; // [stripe][counter], last stripe = non-pool threads
+
+         Snapshot(long[][] perWorker) {
+             this.perWorker = perWorker;
+         }
+
+         long total(Counter counter) {
+             long total = 0;
+             for (long[] worker : perWorker) total += worker[counter.ordinal()];
+             return total;
+         }
+
+         /** number of stripes; the last one collects threads outside the ForkJoin pool */
+         int workers() {
+             return perWorker.length;
+         }
+
+         long get(int worker, Counter counter) {
+             return perWorker[worker][counter.ordinal()];
+         }
+
+         boolean isIdle(int worker) {
+             for (long value : perWorker[worker]) {
+                 if (value != 0) return false;
+             }
+             return true;
+         }
+     }
+ }
@@ -0,0 +1,134 @@
+/**
+ * HuntEvents.java
+ *
+ * Java Flight Recorder events for the parallel hunt, in the "Dungeon Hunter" category:
+ *
+ *   dungeon.LeafTask       one per SearchTask leaf: its hunt range and how long it ran
+ *   dungeon.Hunt           one in every dh.jfrHuntSample hunts (default 64): steps and why it stopped
+ *   dungeon.WorkerCounters per ForkJoin worker, every second and once the search ends:
+ *                          cells evaluated, redundant evaluations and steps so far
+ *
+ * Recorded with e.g. java -XX:StartFlightRecording=filename=hunt.jfr ..., and read with
+ * jfr print --events dungeon.LeafTask hunt.jfr or JDK Mission Control. When no recording
+ * is running, begin/commit and isEnabled are cheap checks the JIT folds away. A hunt costs
+ * one mask test, and a sampled one a read of whether dungeon.Hunt is enabled before any
+ * event is allocated or timestamped.
+ */
+
+ import jdk.jfr.Category;
+ import jdk.jfr.Description;
+ import jdk.jfr.Event;
+ import jdk.jfr.EventType;
+ import jdk.jfr.FlightRecorder;
+ import jdk.jfr.Label;
+ import jdk.jfr.Name;
+ import jdk.jfr.Period;
+ import jdk.jfr.StackTrace;
+
+ final class HuntEvents {
+
+     /** hunts sampled: index & HUNT_SAMPLE_MASK == 0, the property rounded up to a power of two */
+     static final int HUNT_SAMPLE_MASK = sampleMask(Integer.getInteger("dh.jfrHuntSample", 64));
+     private static final EventType HUNT_TYPE = EventType.getEventType(Hunt.class);
+
+     // why a hunt stopped climbing
+     static final String PEAK = "peak", JOINED = "joined", CUT = "cut", SKIPPED = "skipped";
+
+     private HuntEvents() {}
+
+     private static int sampleMask(int every) {
+         return every <= 1 ? 0 : Integer.highestOneBit(every - 1) * 2 - 1;
+     }
+
+     static boolean sampled(int index) {
+         return (index & HUNT_SAMPLE_MASK) == 0;
+     }
+
+     /** whether a running recording has dungeon.Hunt enabled: check before creating the event */
+     static boolean huntEnabled() {
+         return HUNT_TYPE.isEnabled();
+     }
+
+     @Name("dungeon.LeafTask")
+     @Label("Leaf Task")
+     @Category("Dungeon Hunter")
+     @Description("A SearchTask leaf running its range of hunts")
+     @StackTrace(false)
+     static class LeafTask extends Event {
+         @Label("First Hunt")
+         int startIndex;
+
+         @Label("Hunts")
+         @Description("Size of the leaf's range")
+         int hunts;
+
+         @Label("Best Mana")
+         int max;
+     }
+
+     @Name("dungeon.Hunt")
+     @Label("Hunt")
+     @Category("Dungeon Hunter")
+     @Description("One sampled hunt, from its start cell to where it stopped")
+     @StackTrace(false)
+     static class Hunt extends Event {
+         @Label("Hunt")
+         int index;
+
+         @Label("Steps")
+         @Description("Cells this hunt claimed")
+         int steps;
+
+         @Label("Stop Reason")
+         @Description("peak, joined (reached an earlier path), cut (by the bound) or skipped (by the bound)")
+         String stopReason;
+
+         @Label("Mana")
+         int mana;
+     }
+
+     @Name("dungeon.WorkerCounters")
+     @Label("Worker Counters")
+     @Category("Dungeon Hunter")
+     @Description("Running HuntCounters totals of one ForkJoin worker; 'other' collects threads outside the pool")
+     @Period("1 s")
+     @StackTrace(false)
+     static class WorkerCounters extends Event {
+         @Label("Worker")
+         String worker;
+
+         @Label("Cells Evaluated")
+         long cellsEvaluated;
+
+         @Label("Redundant Evaluations")
+         @Description("Mana values computed but already published by another hunt")
+         long redundantEvaluations;
+
+         @Label("Steps")
+         long steps;
+     }
+
+     /**
+      * Emits dungeon.WorkerCounters for this dungeon's counters while a recording asks for them,
+      * until the returned stop action runs (which emits them one last time).
+      */
+     static Runnable watch(DungeonMapParallel dungeon) {
+         Runnable hook = () -> {
+             HuntCounters.Snapshot counts = dungeon.getCounters().snapshot();
+             for (int w = 0; w < counts.workers(); w++) {
+                 if (counts.isIdle(w)) continue;
+                 WorkerCounters event = new WorkerCounters();
+                 event.worker = w == counts.workers() - 1 ? "other" : "worker " + w;
+                 event.cellsEvaluated = counts.get(w, HuntCounters.Counter.CELLS_EVALUATED);
+                 event.redundantEvaluations = counts.get(w, HuntCounters.Counter.REDUNDANT_EVALUATIONS);
+                 event.steps = counts.get(w, HuntCounters.Counter.STEPS);
+                 event.commit();
+             }
+         };
+         FlightRecorder.addPeriodicEvent(WorkerCounters.class, hook);
+         return () -> {
+             hook.run(); // final totals, whatever the period
+             FlightRecorder.removePeriodicEvent(hook);
+         };
+     }
+ }
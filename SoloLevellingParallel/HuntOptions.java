@@ -0,0 +1,145 @@
+/**
+ * HuntOptions.java
+ *
+ * Optional "--name=value" command line flags for DungeonHunterParallel.
+ * They may appear anywhere on the command line; everything else is kept,
+ * in order, as the positional arguments <gridSize> <density> <randomSeed>.
+ *
+ *   --grid=flat|offheap|mapped|sparse   storage backend for the dungeon grid (default flat)
+ *   --grid-file=<path>                  backing file for --grid=mapped
+ *   --mana=scalar|fast                  mana evaluation: exact scalar (default), or table
+ *                                       estimates refined exactly where they cannot decide
+ *   --strategy=hunt|bound|coarse|sweep|auto
+ *                                       every hunt climbs to its peak (default), branch-and-bound:
+ *                                       hunts that provably cannot beat the best peak are pruned,
+ *                                       climbs only from the best maxima of a coarse lattice
+ *                                       (dh.coarseStep cells apart, dh.coarseTop climbs), every
+ *                                       cell evaluated in a linear sweep, or hunt or sweep,
+ *                                       whichever the cost model expects to be faster
+ *   --order=index|morton                run the hunts in index order (default), or sorted by the
+ *                                       Z-order of their start cells, for cache locality
+ *   --scheduler=fork|region             split the hunts by recursive ForkJoin tasks (default), or route
+ *                                       them to home workers by grid region (RegionScheduler,
+ *                                       dh.regionsPerWorker bands each); not used by --strategy=coarse
+ *   --mana-cache=<dir>                  keep computed mana values in a memory-mapped file per
+ *                                       (gridSize, seed) in dir and reuse them in later runs
+ *                                       (ManaCache; default: the dh.manaCache property, else off)
+ *   --tiles=<dir>                       write the maps as PNG tile pyramids in dir instead of two
+ *                                       single images, for dungeons too large for one (MapTilePyramid)
+ *   --autotune                          pick the SearchTask threshold from the measured cost of a hunt
+ *                                       (GrainTuner: a pilot, or the cost saved in dh.autotuneFile;
+ *                                       default: the dh.autotune property, else the fixed heuristics)
+ *   --jmx                               publish live progress as the dungeon:type=HuntProgress
+ *                                       MXBean (HuntProgress; default: the dh.jmx property, else off)
+ *   --no-maps                           skip writing the PNG visualisations
+ */
+
+ import java.nio.file.Path;
+ import java.nio.file.Paths;
+ import java.util.ArrayList;
+ import java.util.List;
+ import java.util.Locale;
+
+ class HuntOptions {
+
+     /** How the hunts are scheduled, selected with --strategy=<name> */
+     enum Strategy {
+         HUNT,  // all hunts, to completion
+         BOUND, // best-first phases with tile upper bounds (BranchAndBound)
+         COARSE, // top maxima of a coarse lattice only (CoarseSearch)
+         SWEEP, // every cell, no hunts (SweepSearch)
+         AUTO   // HUNT or SWEEP, by DungeonHunterParallel's cost model
+     }
+
+     /** Order the hunts are split among tasks in, selected with --order=<name> */
+     enum Order {
+         INDEX, // hunt index, so random start cells
+         MORTON // Z-order of the start cells (MortonOrder)
+     }
+
+     /** How the hunts are spread over the workers, selected with --scheduler=<name> */
+     enum Scheduler {
+         FORK,  // SearchTask recursion over the hunt schedule
+         REGION // home worker per grid region, whole-region stealing (RegionScheduler)
+     }
+
+     ManaGrid.Backend gridBackend = ManaGrid.Backend.FLAT;
+     Path gridFile = Paths.get(System.getProperty("java.io.tmpdir"), "dungeon-grid.bin");
+     ManaKernel.Mode manaMode = ManaKernel.Mode.SCALAR;
+     Strategy strategy = Strategy.HUNT;
+     Order order = Order.INDEX;
+     Scheduler scheduler = Scheduler.FORK;
+     Path manaCache = System.getProperty("dh.manaCache") == null ? null : Paths.get(System.getProperty("dh.manaCache"));
+     Path tilesDir = null;
+     boolean autotune = Boolean.getBoolean("dh.autotune");
+     boolean jmx = Boolean.getBoolean("dh.jmx");
+     boolean writeMaps = true;
+
+     private final List<String> positional = new ArrayList<>();
+
+     /**
+      * @throws IllegalArgumentException for an unknown flag or an invalid value
+      */
+     static HuntOptions parse(String[] args) {
+         HuntOptions options = new HuntOptions();
+         for (String arg : args) {
+             if (!arg.startsWith("--")) {
+                 options.positional.add(arg);
+                 continue;
+             }
+             int eq = arg.indexOf('=');
+             String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+             String value = eq < 0 ? "" : arg.substring(eq + 1);
+             switch (name) {
+                 case "grid":
+                     options.gridBackend = parseEnum(ManaGrid.Backend.class, name, value);
+                     break;
+                 case "grid-file":
+                     options.gridFile = Paths.get(value);
+                     break;
+                 case "mana":
+                     options.manaMode = parseEnum(ManaKernel.Mode.class, name, value);
+                     break;
+                 case "strategy":
+                     options.strategy = parseEnum(Strategy.class, name, value);
+                     break;
+                 case "order":
+                     options.order = parseEnum(Order.class, name, value);
+                     break;
+                 case "scheduler":
+                     options.scheduler = parseEnum(Scheduler.class, name, value);
+                     break;
+                 case "mana-cache":
+                     options.manaCache = Paths.get(value);
+                     break;
+                 case "tiles":
+                     options.tilesDir = Paths.get(value);
+                     break;
+                 case "autotune":
+                     options.autotune = true;
+                     break;
+                 case "jmx":
+                     options.jmx = true;
+                     break;
+                 case "no-maps":
+                     options.writeMaps = false;
+                     break;
+                 default:
+                     throw new IllegalArgumentException("Unknown option " + arg);
+             }
+         }
+         return options;
+     }
+
+     static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+         try {
+             return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+         } catch (IllegalArgumentException e) {
+             throw new IllegalArgumentException("Invalid value for --" + name + ": " + value);
+         }
+     }
+
+     String[] positional() {
+         return positional.toArray(new String[0]);
+     }
+ }
@@ -2,93 +2,127 @@
  * Hunt.java
  *
  * Represents a search in the grid of a DungeonMap to identify the local maximum from a start point.
- *
+ * One HuntParallel runs many hunts in turn: the results live in a HuntStore,
+ * and this object only holds the state of the hunt currently running.
+ * A hunt that reaches a cell claimed by an earlier hunt has joined that hunt's path,
+ * so it ends at the same peak: it takes that peak from the store (the basin map)
+ * instead of stopping at the cell, and so reports its true peak. A hunt pruned by the
+ * bound stores the cell it stopped at negated, so it is never taken for a peak: a hunt
+ * that joins its path cannot beat the best peak either, and is cut there too.
  *
  *M. Kuttel 2025
  */
 
  public class HuntParallel {
 	private int id;						//  identifier for this hunt
-	private int posRow, posCol;		// Position in the dungeonMap
+	private int cell;				// Position in the dungeonMap, as a flat cell index
 	private int steps; 				//number of steps to end of the search
-	private boolean stopped;	// Did the search hit a previously searched location?
+	private boolean stopped;	// Did the search join a previously searched path?
+	private String stopReason;	// HuntEvents.PEAK, JOINED, CUT or SKIPPED, for the dungeon.Hunt event
 
-	private DungeonMapParallel dungeon;
-	public enum Direction {
-	    STAY,
-	    LEFT,
-	    RIGHT,
-	    UP,
-	    DOWN,
-	    UP_LEFT,
-	    UP_RIGHT,
-	    DOWN_LEFT,
-	    DOWN_RIGHT
-	}
+	private final HuntStore store;
+	private final DungeonMapParallel dungeon;
+	private final BranchAndBound bound; // null unless --strategy=bound
 
-	public HuntParallel(int id, int pos_row, int pos_col, DungeonMapParallel dungeon) {
-		this.id = id;
-		this.posRow = pos_row; //randomly allocated
-		this.posCol = pos_col; //randomly allocated
+	public HuntParallel(HuntStore store, DungeonMapParallel dungeon, BranchAndBound bound) {
+		this.store = store;
 		this.dungeon = dungeon;
-		this.stopped = false;
+		this.bound = bound;
 	}
 
 	/**
-     * Find the local maximum mana from an initial starting point
+     * Find the local maximum mana from the initial starting point (row, col) of hunt index,
+     * recording its peak and its steps in the store
      * 
      * @return the highest power/mana located
      */
-	public int findManaPeak() {
+	public int findManaPeak(int index, int row, int col) {
+		id = index + 1;
+		cell = dungeon.cellIndex(row, col); //randomly allocated
+		steps = 0;
+		stopped = false;
+		store.finalCell[index] = 0; //no peak yet
+		HuntEvents.Hunt event = HuntEvents.sampled(index) && HuntEvents.huntEnabled() ? new HuntEvents.Hunt() : null;
+		if (event != null) event.begin();
+		int power;
+		if (bound != null && bound.canSkip(row, col)) { //cannot beat the best peak from anywhere in its tile
+			dungeon.getCounters().increment(HuntCounters.Counter.HUNTS_SKIPPED);
+			stopReason = HuntEvents.SKIPPED;
+			power = Integer.MIN_VALUE;
+		} else {
+			power = climb();
+			if (bound != null) bound.offer(power);
+		}
+		boolean pruned = stopReason == HuntEvents.SKIPPED || stopReason == HuntEvents.CUT;
+		store.finalCell[index] = pruned ? -cell : cell;
+		store.steps[index] = steps;
+		dungeon.getCounters().increment(HuntCounters.Counter.HUNTS_COMPLETED);
+		if (!pruned) dungeon.offerPeak(power, cell);
+		if (event != null && event.shouldCommit()) {
+			event.index = index;
+			event.steps = steps;
+			event.stopReason = stopReason;
+			event.mana = power;
+			event.commit();
+		}
+		return power;
+	}
+
+	private int climb() {
 		int power=Integer.MIN_VALUE;
-		Direction next = Direction.STAY;
+		HuntCounters counters = dungeon.getCounters();
 		
-		while(!dungeon.visited(posRow, posCol)) { // stop when hit existing path
-			power=dungeon.getManaLevel(posRow, posCol);
-			dungeon.setVisited(posRow, posCol, id);
+		while(dungeon.claim(cell, id)) { // stop when hit existing path - claim is atomic, so no two hunts share a cell
+			power=dungeon.getManaLevel(cell);
 			steps++;
-			next = dungeon.getNextStepDirection(posRow, posCol);
-			if(DungeonHunterParallel.DEBUG) System.out.println("Shadow "+getID()+" moving  "+next);
-			switch(next) {
-				case STAY: return power; //found local valley
-				case LEFT:
-					posRow--;
-					break;
-				case RIGHT:
-					posRow=posRow+1;
-					break;
-				case UP:
-					posCol=posCol-1;
-					break;
-				case DOWN:
-					posCol=posCol+1;
-					break;
-				case UP_LEFT:
-					posCol=posCol-1;
-					posRow--;
-					break;
-				case UP_RIGHT:
-					posCol=posCol-1;
-					posRow=posRow+1;
-					break;
-				case DOWN_LEFT:
-					posCol=posCol+1; //fixed BUG!!!
-					posRow--;
-					break;
-				case DOWN_RIGHT:
-					posCol=posCol+1;
-					posRow=posRow+1;
+			counters.increment(HuntCounters.Counter.STEPS);
+			if (bound != null && bound.canCut(dungeon.rowOf(cell), dungeon.columnOf(cell), power)) {
+				counters.increment(HuntCounters.Counter.HUNTS_CUT);
+				stopReason = HuntEvents.CUT;
+				return power; //its peak is below the best one
 			}
+			int next = dungeon.getNextStep(cell); //offset to the best neighbour
+			if(DungeonHunterParallel.DEBUG) System.out.println("Shadow "+getID()+" moving by "+next);
+			if(next == 0) { //found local valley
+				stopReason = HuntEvents.PEAK;
+				return power;
+			}
+			cell += next;
 		}
 		stopped=true;
-		return power;
+		stopReason = HuntEvents.JOINED;
+		return joinPath();
+	}
+
+	// peak of the earlier path through cell: its hunt's, once it has one, else follow the path up;
+	// a path the bound pruned leads to a peak below the best, so the hunt is cut where it joins it
+	private int joinPath() {
+		HuntCounters counters = dungeon.getCounters();
+		while (true) {
+			int owner = dungeon.owner(cell); //UNVISITED: ahead of a hunt still climbing
+			int peak = owner == ManaGrid.UNVISITED ? 0 : store.finalCell[owner - 1];
+			if (peak < 0) {
+				counters.increment(HuntCounters.Counter.HUNTS_CUT);
+				stopReason = HuntEvents.CUT;
+				return dungeon.getManaLevel(cell);
+			}
+			if (peak != 0) {
+				counters.increment(HuntCounters.Counter.BASIN_JOINS);
+				cell = peak;
+				return dungeon.getManaLevel(cell);
+			}
+			counters.increment(HuntCounters.Counter.BASIN_WALKS);
+			int next = dungeon.getNextStep(cell); //the same step that hunt takes
+			if (next == 0) return dungeon.getManaLevel(cell);
+			cell += next;
+		}
 	}
 
 	public int getID() { return id; }
 
-	public int getPosRow() { return posRow;}
+	public int getPosRow() { return dungeon.rowOf(cell);}
 
-	public int getPosCol() { return posCol;}
+	public int getPosCol() { return dungeon.columnOf(cell);}
 
 	public int getSteps() { return steps;}
 	
@@ -0,0 +1,152 @@
+/**
+ * HuntProgress.java
+ *
+ * The HuntProgressMXBean of one run. Nothing here is on the hunt path: searches completed
+ * and cells evaluated are sums of the per-worker HuntCounters stripes, the best peak is
+ * the dungeon's (one read per hunt, a CAS only on improvement), and the pool figures are
+ * ForkJoinPool's own monitoring methods - all read only when a client polls.
+ */
+
+ import java.lang.management.ManagementFactory;
+ import java.util.concurrent.ForkJoinPool;
+ import javax.management.JMException;
+ import javax.management.MBeanServer;
+ import javax.management.ObjectName;
+
+ class HuntProgress implements HuntProgressMXBean {
+
+     static final String NAME = "dungeon:type=HuntProgress";
+
+     private final DungeonMapParallel dungeon;
+     private volatile String state = "setup";
+     private volatile long searchesTotal;
+     private volatile long startNanos, endNanos;
+     private volatile ForkJoinPool pool;
+     private long lastNanos, lastCells; // previous read of getCellsEvaluatedPerSecond, guarded by this
+
+     HuntProgress(DungeonMapParallel dungeon) {
+         this.dungeon = dungeon;
+     }
+
+     /**
+      * Registers a new HuntProgress for this dungeon, replacing the bean of an earlier run in
+      * the same JVM (e.g. under ProfileHarness).
+      */
+     static HuntProgress register(DungeonMapParallel dungeon) throws JMException {
+         HuntProgress progress = new HuntProgress(dungeon);
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName(NAME);
+         if (server.isRegistered(name)) server.unregisterMBean(name);
+         server.registerMBean(progress, name);
+         return progress;
+     }
+
+     /** the search has started: searches hunts (climbs, with --strategy=coarse) on pool */
+     void started(ForkJoinPool pool, long searches) {
+         this.pool = pool;
+         this.searchesTotal = searches;
+         this.startNanos = System.nanoTime();
+         this.state = "searching";
+     }
+
+     /** --strategy=coarse: the number of climbs, known once the lattice is searched */
+     void setSearchesTotal(long searches) {
+         this.searchesTotal = searches;
+     }
+
+     void finished() {
+         endNanos = System.nanoTime();
+         state = "done";
+     }
+
+     @Override
+     public String getState() {
+         return state;
+     }
+
+     @Override
+     public long getElapsedMillis() {
+         long start = startNanos, end = endNanos;
+         return start == 0 ? 0 : ((end != 0 ? end : System.nanoTime()) - start) / 1_000_000;
+     }
+
+     @Override
+     public long getSearchesTotal() {
+         return searchesTotal;
+     }
+
+     @Override
+     public long getSearchesCompleted() {
+         return dungeon.getCounters().sum(HuntCounters.Counter.HUNTS_COMPLETED);
+     }
+
+     @Override
+     public long getSearchesRemaining() {
+         return Math.max(0, searchesTotal - getSearchesCompleted());
+     }
+
+     @Override
+     public long getCellsEvaluated() {
+         return dungeon.getCounters().sum(HuntCounters.Counter.CELLS_EVALUATED);
+     }
+
+     @Override
+     public synchronized double getCellsEvaluatedPerSecond() {
+         long now = System.nanoTime(), cells = getCellsEvaluated();
+         if (lastNanos == 0) {
+             lastNanos = startNanos;
+             if (lastNanos == 0) return 0;
+         }
+         double rate = now > lastNanos ? (cells - lastCells) * 1e9 / (now - lastNanos) : 0;
+         lastNanos = now;
+         lastCells = cells;
+         return rate;
+     }
+
+     @Override
+     public int getBestMana() {
+         return DungeonMapParallel.peakMana(dungeon.bestPeak());
+     }
+
+     @Override
+     public double getBestX() {
+         long best = dungeon.bestPeak();
+         return best == DungeonMapParallel.NO_PEAK ? Double.NaN : dungeon.getXcoord(dungeon.rowOf(DungeonMapParallel.peakCell(best)));
+     }
+
+     @Override
+     public double getBestY() {
+         long best = dungeon.bestPeak();
+         return best == DungeonMapParallel.NO_PEAK ? Double.NaN : dungeon.getYcoord(dungeon.columnOf(DungeonMapParallel.peakCell(best)));
+     }
+
+     @Override
+     public int getPoolParallelism() {
+         ForkJoinPool p = pool;
+         return p == null ? 0 : p.getParallelism();
+     }
+
+     @Override
+     public int getPoolActiveThreads() {
+         ForkJoinPool p = pool;
+         return p == null ? 0 : p.getActiveThreadCount();
+     }
+
+     @Override
+     public long getPoolStealCount() {
+         ForkJoinPool p = pool;
+         return p == null ? 0 : p.getStealCount();
+     }
+
+     @Override
+     public long getPoolQueuedTasks() {
+         ForkJoinPool p = pool;
+         return p == null ? 0 : p.getQueuedTaskCount();
+     }
+
+     @Override
+     public int getPoolQueuedSubmissions() {
+         ForkJoinPool p = pool;
+         return p == null ? 0 : p.getQueuedSubmissionCount();
+     }
+ }
@@ -0,0 +1,48 @@
+/**
+ * HuntProgressMXBean.java
+ *
+ * Live progress of a DungeonHunterParallel run, registered as dungeon:type=HuntProgress
+ * with --jmx and readable with any local JMX client (jconsole, VisualVM, jcmd-attached
+ * tools). Attributes are sampled from the run's striped counters when read.
+ */
+
+ public interface HuntProgressMXBean {
+
+     /** setup, searching or done */
+     String getState();
+
+     /** time since the search started (until it ended, once done), 0 during setup */
+     long getElapsedMillis();
+
+     /** hunts of the run (climbs, with --strategy=coarse; 0 with --strategy=sweep, which has none) */
+     long getSearchesTotal();
+
+     long getSearchesCompleted();
+
+     long getSearchesRemaining();
+
+     long getCellsEvaluated();
+
+     /** cells evaluated per second since the previous read of this attribute (since the start on the first) */
+     double getCellsEvaluatedPerSecond();
+
+     /** best mana found so far, Integer.MIN_VALUE before the first hunt ends */
+     int getBestMana();
+
+     /** dungeon coordinates of the best mana, NaN before the first hunt ends */
+     double getBestX();
+
+     double getBestY();
+
+     int getPoolParallelism();
+
+     int getPoolActiveThreads();
+
+     /** tasks stolen between the ForkJoin pool's workers so far (an underestimate while running) */
+     long getPoolStealCount();
+
+     /** tasks queued in the workers' deques */
+     long getPoolQueuedTasks();
+
+     int getPoolQueuedSubmissions();
+ }
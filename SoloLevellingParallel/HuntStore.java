@@ -0,0 +1,35 @@
+/**
+ * HuntStore.java
+ *
+ * The state of every hunt in a run, stored struct-of-arrays: one primitive array
+ * per field, indexed by hunt (hunt id = index + 1), instead of one HuntParallel
+ * object per hunt. A few million hunts then cost a handful of array allocations
+ * and 8 bytes each, with no object headers or per-hunt dungeon references to trace.
+ * Start points are not stored at all: StartPositions computes them on demand.
+ *
+ * Each hunt's entries are written by the one task that runs it, before the
+ * ForkJoin join that publishes them to the caller. finalCell doubles as the basin
+ * map: a hunt that reaches a cell claimed by hunt id reads finalCell[id - 1] while
+ * other hunts are still running. Cell 0 is in the grid border, so 0 means "no peak
+ * yet" and a negative entry "pruned, no peak"; an int read is atomic, and the peak's
+ * mana is published by the grid itself.
+ */
+
+ class HuntStore {
+
+     final StartPositions starts; // start position of each hunt, drawn at random (null for --strategy=coarse)
+     final int[] finalCell;  // cell index of the hunt's peak (DungeonMapParallel.cellIndex), 0 while it runs;
+                             // --strategy=bound: minus the cell where a pruned (cut or skipped) hunt stopped
+     final int[] steps;      // cells claimed by the hunt
+     MortonOrder order;      // --order=morton: the hunts sorted by start cell (MortonOrder), null for index order
+
+     HuntStore(int hunts, StartPositions starts) {
+         this.starts = starts;
+         finalCell = new int[hunts];
+         steps = new int[hunts];
+     }
+
+     int size() {
+         return finalCell.length;
+     }
+ }
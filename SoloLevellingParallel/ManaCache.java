@@ -0,0 +1,227 @@
+/**
+ * ManaCache.java
+ *
+ * Persistent cache of exact mana values across runs, for --mana-cache=<dir>
+ * (or -Ddh.manaCache=<dir>, which also reaches the profilers and the validation script).
+ * Those run the same (gateSize, seed) dungeons again and again, and the mana of a cell
+ * depends on nothing else, so every run recomputed the same values. Here each dungeon has
+ * one memory-mapped file, mana-<gateSize>-<seed>.bin: DungeonMapParallel looks a cell up
+ * there before computing it and writes every value it computes back, so a repeat run is
+ * served from the page cache.
+ *
+ * File layout, native byte order:
+ *   header (HEADER_BYTES)  magic, VERSION, rows, columns, gateSize, seed, fingerprint of the
+ *                          mana function, CRC32 of all of these
+ *   block table            one checksum per block of BLOCK_CELLS values
+ *   values                 rows x columns ints, row-major, biased like OffHeapManaGrid so that
+ *                          zero means "not cached" - a new file is sparse and needs no fill
+ *
+ * A file whose header does not match the dungeon is rebuilt empty; bump VERSION whenever
+ * ManaKernel's results change. close() writes the checksums of the blocks the run changed.
+ * On open every block is checked and a mismatch - a run that died before close, a damaged
+ * file - clears that block, so the cache only serves values a completed run wrote.
+ * A block's checksum is its CRC32 xor that of an all-zero block, so empty blocks check as 0.
+ * The mapping is never forced: the OS writes it back in its own time, and the checksums
+ * catch whatever an OS crash leaves half-written.
+ *
+ * Only exact values belong here - the FAST mode's estimates are never written.
+ * The file is locked while open; a second process gets null from open and runs uncached.
+ */
+
+ import jdk.incubator.foreign.MemoryHandles;
+ import jdk.incubator.foreign.MemorySegment;
+ import jdk.incubator.foreign.ResourceScope;
+
+ import java.io.IOException;
+ import java.io.UncheckedIOException;
+ import java.lang.invoke.VarHandle;
+ import java.nio.ByteBuffer;
+ import java.nio.ByteOrder;
+ import java.nio.channels.FileChannel;
+ import java.nio.channels.FileLock;
+ import java.nio.channels.OverlappingFileLockException;
+ import java.nio.file.Files;
+ import java.nio.file.Path;
+ import java.nio.file.StandardOpenOption;
+ import java.util.stream.IntStream;
+ import java.util.zip.CRC32;
+
+ class ManaCache implements AutoCloseable {
+
+     static final int VERSION = 1;
+     static final int BLOCK_CELLS = 1 << 12; // values per checksum: 16 KiB
+
+     private static final long MAGIC = 0x4D414E4143414348L; // "MANACACH" - reads back swapped on the other byte order
+     private static final int HEADER_BYTES = 64;
+     private static final int HEADER_CHECKED = 40; // bytes covered by the header CRC
+
+     // (segment, byte offset) -> int
+     private static final VarHandle INT = MemoryHandles.varHandle(int.class, ByteOrder.nativeOrder());
+
+     private final Path file;
+     private final FileChannel channel;
+     private final FileLock lock;
+     private final ResourceScope scope;
+     private final MemorySegment table, values;
+     private final int columns, blocks;
+     private final int fullBlockEmpty, lastBlockEmpty; // CRC32 of an all-zero block, full and last
+     private final byte[] dirty; // per block: written since open
+     private boolean rebuilt;
+     private int loaded, dropped;
+
+     private ManaCache(Path file, FileChannel channel, FileLock lock, int rows, int columns) {
+         this.file = file;
+         this.channel = channel;
+         this.lock = lock;
+         this.columns = columns;
+         long cells = (long) rows * columns;
+         blocks = (int) ((cells + BLOCK_CELLS - 1) / BLOCK_CELLS);
+         scope = ResourceScope.newSharedScope();
+         long tableBytes = align(blocks * (long) Integer.BYTES);
+         MemorySegment mapped;
+         try {
+             mapped = MemorySegment.mapFile(file, 0, fileBytes(rows, columns), FileChannel.MapMode.READ_WRITE, scope);
+         } catch (IOException e) {
+             scope.close();
+             throw new UncheckedIOException("Could not map mana cache " + file, e);
+         }
+         table = mapped.asSlice(HEADER_BYTES, blocks * (long) Integer.BYTES);
+         values = mapped.asSlice(HEADER_BYTES + tableBytes, cells * Integer.BYTES);
+         int last = (int) (cells - (long) (blocks - 1) * BLOCK_CELLS);
+         fullBlockEmpty = crc(new byte[BLOCK_CELLS * Integer.BYTES], BLOCK_CELLS * Integer.BYTES);
+         lastBlockEmpty = crc(new byte[BLOCK_CELLS * Integer.BYTES], last * Integer.BYTES);
+         dirty = new byte[blocks];
+     }
+
+     private static long align(long bytes) {
+         return (bytes + 63) & ~63L;
+     }
+
+     private static long fileBytes(int rows, int columns) {
+         long blocks = ((long) rows * columns + BLOCK_CELLS - 1) / BLOCK_CELLS;
+         return HEADER_BYTES + align(blocks * Integer.BYTES) + (long) rows * columns * Integer.BYTES;
+     }
+
+     /**
+      * Opens (or creates) the cache file for a dungeon in dir, and clears every block that
+      * fails its checksum.
+      * @return the cache, or null if another process has the file open
+      */
+     static ManaCache open(Path dir, int gateSize, int seed, DungeonMapParallel dungeon) throws IOException {
+         int rows = dungeon.getRows(), columns = dungeon.getColumns();
+         Files.createDirectories(dir);
+         Path file = dir.resolve("mana-" + gateSize + "-" + seed + ".bin");
+         FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+         FileLock lock;
+         try {
+             lock = channel.tryLock();
+         } catch (OverlappingFileLockException e) {
+             lock = null; //held by this JVM, e.g. a profiler run that failed before close
+         }
+         if (lock == null) {
+             channel.close();
+             return null;
+         }
+         try {
+             ByteBuffer expected = header(rows, columns, gateSize, seed, dungeon.manaFingerprint());
+             ByteBuffer found = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+             channel.read(found, 0);
+             long bytes = fileBytes(rows, columns);
+             boolean rebuild = channel.size() != bytes || !expected.equals(found.flip());
+             if (rebuild) { //new, other dungeon, other version or damaged header: start empty
+                 channel.truncate(0);
+                 channel.write(ByteBuffer.allocate(1), bytes - 1); //sparse: reads back as zeros
+                 channel.write(expected.rewind(), 0);
+             }
+             ManaCache cache = new ManaCache(file, channel, lock, rows, columns);
+             cache.rebuilt = rebuild;
+             if (!rebuild) cache.verify();
+             return cache;
+         } catch (IOException | RuntimeException e) {
+             channel.close();
+             throw e;
+         }
+     }
+
+     private static ByteBuffer header(int rows, int columns, int gateSize, int seed, long fingerprint) {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+         header.putLong(MAGIC).putInt(VERSION).putInt(rows).putInt(columns).putInt(gateSize).putInt(seed)
+                 .putInt(0).putLong(fingerprint);
+         CRC32 crc = new CRC32();
+         crc.update(header.array(), 0, HEADER_CHECKED);
+         header.putInt((int) crc.getValue());
+         return header.clear();
+     }
+
+     private static int crc(byte[] bytes, int length) {
+         CRC32 crc = new CRC32();
+         crc.update(bytes, 0, length);
+         return (int) crc.getValue();
+     }
+
+     private MemorySegment block(int b) {
+         long first = (long) b * BLOCK_CELLS * Integer.BYTES;
+         return values.asSlice(first, Math.min(BLOCK_CELLS * (long) Integer.BYTES, values.byteSize() - first));
+     }
+
+     // a shared segment has no ByteBuffer view in JDK 17, so the block is copied out to be checksummed
+     private int checksum(int b, byte[] buffer) {
+         MemorySegment block = block(b);
+         MemorySegment.ofArray(buffer).copyFrom(block);
+         return crc(buffer, (int) block.byteSize()) ^ (b == blocks - 1 ? lastBlockEmpty : fullBlockEmpty);
+     }
+
+     // checks all blocks in parallel, clearing those that do not match the table
+     private void verify() {
+         int[] state = IntStream.range(0, blocks).parallel().map(b -> {
+             int stored = (int) INT.get(table, b * (long) Integer.BYTES);
+             if (checksum(b, new byte[BLOCK_CELLS * Integer.BYTES]) == stored) return stored == 0 ? 0 : 1;
+             block(b).fill((byte) 0);
+             INT.set(table, b * (long) Integer.BYTES, 0);
+             return 2;
+         }).toArray();
+         for (int s : state) {
+             if (s == 1) loaded++;
+             if (s == 2) dropped++;
+         }
+     }
+
+     private long offset(int row, int column) {
+         return ((long) row * columns + column) * Integer.BYTES;
+     }
+
+     /** cached mana of grid point (row, column), or ManaGrid.UNEVALUATED */
+     int get(int row, int column) {
+         return (int) INT.get(values, offset(row, column)) ^ ManaGrid.UNEVALUATED;
+     }
+
+     /** stores the exact mana of grid point (row, column); safe from any thread */
+     void put(int row, int column, int value) {
+         INT.set(values, offset(row, column), value ^ ManaGrid.UNEVALUATED);
+         dirty[(int) (((long) row * columns + column) / BLOCK_CELLS)] = 1;
+     }
+
+     Path file() { return file; }
+
+     /** true if the file was (re)created empty by this open */
+     boolean rebuilt() { return rebuilt; }
+
+     /** blocks that held values when opened */
+     int blocksLoaded() { return loaded; }
+
+     /** blocks cleared on open because their checksum did not match */
+     int blocksDropped() { return dropped; }
+
+     /** writes the checksums of the blocks changed since open, unmaps the file and releases it */
+     @Override
+     public void close() throws IOException {
+         try {
+             IntStream.range(0, blocks).parallel().filter(b -> dirty[b] != 0)
+                     .forEach(b -> INT.set(table, b * (long) Integer.BYTES, checksum(b, new byte[BLOCK_CELLS * Integer.BYTES])));
+         } finally {
+             scope.close();
+             lock.release();
+             channel.close();
+         }
+     }
+ }
@@ -0,0 +1,78 @@
+/**
+ * ManaGrid.java
+ *
+ * Storage layer for the per-cell state of a DungeonMapParallel:
+ * the fixed-point mana value of each cell and the id of the hunt that visited it.
+ * Cells are addressed by a single flat index, cell = row * stride() + column
+ * (see DungeonMapParallel.cellIndex), so every access is one load instead of
+ * the two dependent loads of an int[][].
+ *
+ * Cells are shared by all hunts, so the writes are lock-free CAS operations:
+ * claimVisit lets exactly one hunt own a cell, and publishMana publishes a computed
+ * mana value (with release semantics) exactly once. Reads need no locking.
+ */
+
+import java.nio.file.Path;
+
+interface ManaGrid {
+
+    /** Available storage backends, selected with --grid=<name> */
+    enum Backend {
+        FLAT,    // two int[] planes on the Java heap
+        OFFHEAP, // native memory, outside the heap
+        MAPPED,  // memory-mapped file, bounded by disk instead of RAM
+        SPARSE   // 64x64 tiles allocated on first write
+    }
+
+    int UNEVALUATED = Integer.MIN_VALUE; //means mana not yet measured
+    int UNVISITED = -1; //grid point not yet visited
+    int BORDER = Integer.MIN_VALUE + 1; //mana of the sentinel ring, below any real value
+
+    /** acquire read: a value other than UNEVALUATED is fully published */
+    int getMana(int cell);
+
+    /**
+     * Stores the mana of a cell if no value has been published yet.
+     * @return true if this call published the value, false if another thread got there first
+     */
+    boolean publishMana(int cell, int value);
+
+    /** plain read of the id of the hunt that owns the cell, or UNVISITED */
+    int getVisit(int cell);
+
+    /**
+     * Atomically marks an unvisited cell as owned by hunt id.
+     * @return true if the cell was unvisited and now belongs to id
+     */
+    boolean claimVisit(int cell, int id);
+
+    /** distance between vertically adjacent cells: at least the number of columns */
+    int stride();
+
+    /**
+     * True if the outermost rows and columns already read as BORDER, so the
+     * sentinel ring needs no publishing (see DungeonMapParallel.fillBorder).
+     */
+    default boolean hasBorder() { return false; }
+
+    /** bytes currently allocated for the grid state */
+    long allocatedBytes();
+
+    /**
+     * Creates an empty grid (all cells unevaluated and unvisited).
+     * @param file backing file for MAPPED, ignored by the other backends
+     * @throws IllegalArgumentException if the cells do not fit in int cell indices
+     */
+    static ManaGrid create(Backend backend, int rows, int columns, Path file) {
+        if ((long) rows * columns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Dungeon too large: %d x %d cells, at most %d fit the grid's cell indices",
+                    rows, columns, Integer.MAX_VALUE));
+        }
+        switch (backend) {
+            case OFFHEAP: return OffHeapManaGrid.allocate(rows, columns);
+            case MAPPED: return OffHeapManaGrid.map(rows, columns, file);
+            case SPARSE: return new SparseManaGrid(rows, columns);
+            default: return new FlatManaGrid(rows, columns);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * ManaKernel.java
+ *
+ * Evaluates the dungeon's mana function - the same formula as DungeonMap.getManaLevel -
+ * with every sub-expression that depends on only one axis precomputed once per dungeon:
+ * per grid row (x) and per grid column (y) lookup tables, filled in parallel.
+ * Each cell then only pays for the terms that mix x and y (six trig calls, two exp).
+ *
+ * Java double arithmetic is strict, so as long as every table entry is computed with
+ * exactly the sub-expression the original formula uses, and the terms are combined
+ * in the same order, the result is bit-identical to the cell-by-cell evaluation.
+ *
+ * evaluateStrip is the batch path, for SweepSearch: it evaluates a run of cells in one
+ * row with SIMD lanes (VectorManaKernel) when jdk.incubator.vector is present, and with
+ * the scalar formula otherwise. Hill-climbing steps stay scalar: a step has at most eight
+ * unevaluated neighbours, mostly fewer, and a gathered batch of them costs more than
+ * evaluating them one by one.
+ *
+ * approxFixedPoint is the cheap tier, with no transcendental call per cell. Five of
+ * the six mixed trig terms have an argument of the form a(x) + b(y), and are expanded
+ * with the angle-addition formulas over per-axis sin/cos; sin(x*y/4 + ...) reads a
+ * linearly interpolated sine table; the two boss exponentials are split into per-axis
+ * factors, exp(a + b) = exp(a) * exp(b). Everything one cell needs sits in one record
+ * per row and one per column. The error bound (approxTolerance) is derived from the
+ * table spacing and the largest argument this dungeon can produce.
+ */
+
+ import java.util.stream.IntStream;
+
+ class ManaKernel {
+
+     enum Mode {
+         SCALAR, // one cell at a time, bit-identical to the serial version
+         FAST    // table sin/cos estimates, exact refinement only where the estimates cannot decide
+     }
+
+     /** whether the Vector API module was added to this JVM (--add-modules jdk.incubator.vector) */
+     static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+     /**
+      * Maximum difference, in fixed-point units, between evaluateStrip and fixedPoint.
+      * The vector sin/cos/exp are a few ulps away from Math's, which can only move the
+      * truncated result across one integer boundary.
+      */
+     static final int BATCH_TOLERANCE = 1;
+
+     // sine table for the fast tier: SIN_STEPS intervals over one period, plus a wrap-around entry
+     private static final int SIN_STEPS = 1 << 12;
+     private static final double SIN_SCALE = SIN_STEPS / (2 * Math.PI);
+     private static final double[] SIN_TABLE = new double[SIN_STEPS + 1];
+     static {
+         for (int i = 0; i <= SIN_STEPS; i++) SIN_TABLE[i] = Math.sin(i / SIN_SCALE);
+     }
+
+     /**
+      * Maximum difference, in fixed-point units, between approxFixedPoint and fixedPoint
+      * for this dungeon's coordinates.
+      */
+     final int approxTolerance;
+
+     // per grid row x
+     final double[] xCoord;      // x_coord
+     final double[] xCos5;       // 0.1 * cos(x_coord / 5.0)
+     final double[] xHalf;       // x_coord * 0.5
+     final double[] xSin6;       // 0.2 * sin(x_coord / 6.0)
+     final double[] xOneHalf;    // x_coord * 1.5
+     final double[] xSin;        // 0.05 * sin(x_coord)
+     final double[] xBossGap;    // (x_coord - bossX - 15)^2
+     final double[] xBossDist;   // (x_coord - bossX)^2
+
+     // per grid column y
+     final double[] yCoord;      // y_coord
+     final double[] ySin5;       // 0.1 * sin(y_coord / 5.0)
+     final double[] yThird;      // y_coord * 0.3
+     final double[] yEighth;     // y_coord * 0.8
+     final double[] yCos4;       // 0.15 * cos(y_coord / 4.0)
+     final double[] yLog;        // -0.2 * log(|y_coord - 2 pi| + 0.1)
+     final double[] ySin;        // 0.1 * sin(y_coord)
+     final double[] yBossGap;    // (y_coord - bossY + 10)^2
+     final double[] yBossDist;   // (y_coord - bossY)^2
+
+     // fast tier: FAST_RECORD doubles per row (xFast) and per column (yFast), see fillFastRecords
+     private static final int FAST_RECORD = 16;
+     private final double[] xFast;
+     private final double[] yFast;
+
+     ManaKernel(double xmin, double xmax, double ymin, double ymax,
+             int rows, int columns, double bossX, double bossY) {
+         xCoord = new double[rows];
+         xCos5 = new double[rows];
+         xHalf = new double[rows];
+         xSin6 = new double[rows];
+         xOneHalf = new double[rows];
+         xSin = new double[rows];
+         xBossGap = new double[rows];
+         xBossDist = new double[rows];
+         xFast = new double[rows * FAST_RECORD];
+         IntStream.range(0, rows).parallel().forEach(x -> {
+             double x_coord = xmin + ( (xmax - xmin) / rows ) * x;
+             double dx = x_coord - bossX;
+             xCoord[x] = x_coord;
+             xCos5[x] = 0.1 * Math.cos(x_coord / 5.0);
+             xHalf[x] = x_coord * 0.5;
+             xSin6[x] = 0.2 * Math.sin(x_coord / 6.0);
+             xOneHalf[x] = x_coord * 1.5;
+             xSin[x] = 0.05 * Math.sin(x_coord);
+             xBossGap[x] = (x_coord - bossX - 15) * (x_coord - bossX - 15);
+             xBossDist[x] = dx * dx;
+             fillRowRecord(x);
+         });
+
+         yCoord = new double[columns];
+         ySin5 = new double[columns];
+         yThird = new double[columns];
+         yEighth = new double[columns];
+         yCos4 = new double[columns];
+         yLog = new double[columns];
+         ySin = new double[columns];
+         yBossGap = new double[columns];
+         yBossDist = new double[columns];
+         yFast = new double[columns * FAST_RECORD];
+         IntStream.range(0, columns).parallel().forEach(y -> {
+             double y_coord = ymin + ( (ymax - ymin) / columns ) * y;
+             double dy = y_coord - bossY;
+             yCoord[y] = y_coord;
+             ySin5[y] = 0.1 * Math.sin(y_coord / 5.0);
+             yThird[y] = y_coord * 0.3;
+             yEighth[y] = y_coord * 0.8;
+             yCos4[y] = 0.15 * Math.cos(y_coord / 4.0);
+             yLog[y] = -0.2 * Math.log(Math.abs(y_coord - Math.PI * 2) + 0.1);
+             ySin[y] = 0.1 * Math.sin(y_coord);
+             yBossGap[y] = (y_coord - bossY + 10) * (y_coord - bossY + 10);
+             yBossDist[y] = dy * dy;
+             fillColumnRecord(y);
+         });
+
+         approxTolerance = approxTolerance(Math.max(Math.max(Math.abs(xmin), Math.abs(xmax)),
+                 Math.max(Math.abs(ymin), Math.abs(ymax))));
+     }
+
+     /*
+      * Fast-tier records. Row x:
+      *   0,1  cos, sin(x_coord)                    2,3  cos, sin(xCos5 / 2)
+      *   4,5  cos, sin(xHalf + xSin6)              6,7  cos, sin(xOneHalf)
+      *   8,9  cos, sin(x_coord / 5)                10,11 exp(-0.03 xBossGap), exp(-0.01 xBossDist)
+      *   12 xBossDist   13 x_coord   14 xSin
+      * Column y:
+      *   0,1  cos, sin(ySin5)                      2,3  cos, sin((y_coord + pi/2) / 2)
+      *   4,5  cos, sin(yThird)                     6,7  cos, sin(yCos4 - yEighth)
+      *   8,9  cos, sin(y_coord / 5 + ySin)         10,11 exp(-0.03 yBossGap), exp(-0.01 yBossDist)
+      *   12 yBossDist   13 y_coord   14 yLog
+      */
+     private void fillRowRecord(int x) {
+         double[] r = xFast;
+         int o = x * FAST_RECORD;
+         double x_coord = xCoord[x];
+         r[o] = Math.cos(x_coord);                   r[o + 1] = Math.sin(x_coord);
+         r[o + 2] = Math.cos(xCos5[x] / 2);          r[o + 3] = Math.sin(xCos5[x] / 2);
+         r[o + 4] = Math.cos(xHalf[x] + xSin6[x]);   r[o + 5] = Math.sin(xHalf[x] + xSin6[x]);
+         r[o + 6] = Math.cos(xOneHalf[x]);           r[o + 7] = Math.sin(xOneHalf[x]);
+         r[o + 8] = Math.cos(x_coord / 5.0);         r[o + 9] = Math.sin(x_coord / 5.0);
+         r[o + 10] = Math.exp(-0.03 * xBossGap[x]);  r[o + 11] = Math.exp(-0.01 * xBossDist[x]);
+         r[o + 12] = xBossDist[x];
+         r[o + 13] = x_coord;
+         r[o + 14] = xSin[x];
+     }
+
+     private void fillColumnRecord(int y) {
+         double[] r = yFast;
+         int o = y * FAST_RECORD;
+         double y_coord = yCoord[y];
+         double half = (y_coord + Math.PI / 2) / 2.0;
+         double fifth = y_coord / 5.0 + ySin[y];
+         r[o] = Math.cos(ySin5[y]);                     r[o + 1] = Math.sin(ySin5[y]);
+         r[o + 2] = Math.cos(half);                     r[o + 3] = Math.sin(half);
+         r[o + 4] = Math.cos(yThird[y]);                r[o + 5] = Math.sin(yThird[y]);
+         r[o + 6] = Math.cos(yCos4[y] - yEighth[y]);    r[o + 7] = Math.sin(yCos4[y] - yEighth[y]);
+         r[o + 8] = Math.cos(fifth);                    r[o + 9] = Math.sin(fifth);
+         r[o + 10] = Math.exp(-0.03 * yBossGap[y]);     r[o + 11] = Math.exp(-0.01 * yBossDist[y]);
+         r[o + 12] = yBossDist[y];
+         r[o + 13] = y_coord;
+         r[o + 14] = yLog[y];
+     }
+
+     /*
+      * Error bound of the fast tier, eps per trig term. Linear interpolation of sin over steps
+      * of h = 2pi/SIN_STEPS is off by at most h^2/8; rounding of an argument a (in the exact
+      * formula, and scaling it into table units) adds up to |a| * 2^-51 radians, and the table
+      * entries, angle-addition products and interpolation arithmetic a few more ulps.
+      * The largest argument is x*y/4 + 0.05 for |x|, |y| <= m, bounded by m^2/4 + 3m + 2 for all six.
+      * The mana sum 2 sin*cos + 0.7 sin + 0.3 sin + 0.5 sin + 1.5 cos is then off by at most
+      * 2(2 eps + eps^2) + 3 eps. The split exponentials are off by a few ulps relative to
+      * values below 11, and the sums by a few ulps of 20 - far inside the 1e-12 allowance.
+      * Truncation to fixed point adds one unit.
+      */
+     private static int approxTolerance(double maxCoordinate) {
+         double h = 1 / SIN_SCALE;
+         double maxArgument = maxCoordinate * maxCoordinate / 4 + 3 * maxCoordinate + 2;
+         double eps = h * h / 8 + maxArgument * 0x1p-51 + 0x1p-48;
+         double manaError = 7 * eps + 2 * eps * eps + 1e-12;
+         return (int) Math.ceil(DungeonMapParallel.PRECISION * manaError) + 1;
+     }
+
+     private static double fastSin(double a) {
+         double t = a * SIN_SCALE;
+         double floor = Math.floor(t);
+         int i = (int) ((long) floor & (SIN_STEPS - 1));
+         double s0 = SIN_TABLE[i];
+         return s0 + (SIN_TABLE[i + 1] - s0) * (t - floor);
+     }
+
+     /** mana at grid point (x, y), bit-identical to the original formula */
+     double mana(int x, int y) {
+         double x_coord = xCoord[x];
+         double y_coord = yCoord[y];
+         double distanceSquared = xBossDist[x] + yBossDist[y];
+
+         return (2 * Math.sin(x_coord + ySin5[y] + Math.PI / 2) *
+                 Math.cos((y_coord + xCos5[x] + Math.PI / 2) / 2.0) +
+             0.7 * Math.sin(xHalf[x] + yThird[y] + xSin6[x] + Math.PI / 2) +
+             0.3 * Math.sin(xOneHalf[x] - yEighth[y] + yCos4[y]) +
+             yLog[y] +
+             0.5 * Math.sin((x_coord * y_coord) / 4.0 + xSin[x]) +
+             1.5 * Math.cos((x_coord + y_coord) / 5.0 + ySin[y]) +
+             3.0 * Math.exp(-0.03 * (xBossGap[x] + yBossGap[y])) +
+             8.0 * Math.exp(-0.01 * distanceSquared) +
+             2.0 / (1.0 + 0.05 * distanceSquared));
+     }
+
+     /** mana at grid point (x, y) in fixed point */
+     int fixedPoint(int x, int y) {
+         return (int) (DungeonMapParallel.PRECISION * mana(x, y));
+     }
+
+     /** estimate of mana(x, y) from the row and column records - see the class comment */
+     double approxMana(int x, int y) {
+         double[] r = xFast, c = yFast;
+         int i = x * FAST_RECORD, j = y * FAST_RECORD;
+
+         double a1 = r[i] * c[j] - r[i + 1] * c[j + 1];                 // sin(x + ySin5 + pi/2)
+         double a2 = c[j + 2] * r[i + 2] - c[j + 3] * r[i + 3];         // cos((y + xCos5 + pi/2) / 2)
+         double b = r[i + 4] * c[j + 4] - r[i + 5] * c[j + 5];          // sin(xHalf + yThird + xSin6 + pi/2)
+         double s = r[i + 7] * c[j + 6] + r[i + 6] * c[j + 7];          // sin(xOneHalf - yEighth + yCos4)
+         double e = fastSin((r[i + 13] * c[j + 13]) / 4.0 + r[i + 14]); // sin(x y / 4 + xSin)
+         double f = r[i + 8] * c[j + 8] - r[i + 9] * c[j + 9];          // cos((x + y) / 5 + ySin)
+
+         return 2 * a1 * a2 + 0.7 * b + 0.3 * s + c[j + 14] + 0.5 * e + 1.5 * f +
+             3.0 * (r[i + 10] * c[j + 10]) +
+             8.0 * (r[i + 11] * c[j + 11]) +
+             2.0 / (1.0 + 0.05 * (r[i + 12] + c[j + 12]));
+     }
+
+     /** fixed-point estimate, within approxTolerance of fixedPoint(x, y) */
+     int approxFixedPoint(int x, int y) {
+         return (int) (DungeonMapParallel.PRECISION * approxMana(x, y));
+     }
+
+     /**
+      * Batch path: fixed-point mana of cells (x, y0 .. y0+length-1) into out[0 .. length-1].
+      * Equal to fixedPoint within BATCH_TOLERANCE when vectorised, exactly equal otherwise.
+      */
+     void evaluateStrip(int x, int y0, int length, int[] out) {
+         if (VECTOR_AVAILABLE) {
+             VectorManaKernel.evaluateStrip(this, x, y0, length, out);
+         } else {
+             for (int i = 0; i < length; i++) out[i] = fixedPoint(x, y0 + i);
+         }
+     }
+
+ }
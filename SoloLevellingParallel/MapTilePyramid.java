@@ -0,0 +1,189 @@
+/**
+ * MapTilePyramid.java
+ *
+ * Streaming alternative to visualisePowerMap for --tiles=<dir>, for dungeons too large for
+ * one BufferedImage (a single int[] caps an image at 2^31 pixels). The power map and the
+ * path-only map are written as two pyramids of TILE x TILE PNG tiles in the usual
+ * {z}/{x}/{y}.png layout, so any XYZ tile viewer (Leaflet, OpenLayers, ...) can browse them:
+ *
+ *   <dir>/map/{z}/{x}/{y}.png    every evaluated cell
+ *   <dir>/path/{z}/{x}/{y}.png   visited cells only
+ *   <dir>/tiles.json             image size, zoom levels, mana range
+ *
+ * Level maxZoom is the grid at one cell per pixel, in the same orientation as the single
+ * image; each level above halves both sides, a pixel showing the highest mana of the 2x2
+ * pixels below it (so peaks stay visible), and level 0 is one tile. Tiles with nothing
+ * evaluated are not written; a viewer shows them as blank.
+ *
+ * The pyramid is built by a ForkJoin recursion over the quadtree of tiles: a leaf reads its
+ * cells from the grid, an inner tile downsamples its four children, writes its own PNGs
+ * and hands its planes up, and a child's planes are dropped as soon as its parent has
+ * them. Each worker so holds at most four tiles per level, and the live planes are
+ * counted so the run can report its peak (peakTiles).
+ */
+
+ import java.awt.image.BufferedImage;
+ import java.awt.image.DataBufferInt;
+ import java.io.IOException;
+ import java.io.UncheckedIOException;
+ import java.nio.charset.StandardCharsets;
+ import java.nio.file.Files;
+ import java.nio.file.Path;
+ import java.util.Arrays;
+ import java.util.Locale;
+ import java.util.concurrent.ForkJoinPool;
+ import java.util.concurrent.RecursiveTask;
+ import java.util.concurrent.atomic.AtomicInteger;
+
+ class MapTilePyramid {
+
+     static final int TILE = 256; // pixels per tile side
+
+     private final DungeonMapParallel dungeon;
+     private final PowerMapRenderer colours;
+     private final Path dir;
+     private final int width, height; // full-resolution image: grid rows x grid columns
+     private final int maxZoom;
+     private final AtomicInteger tilesWritten = new AtomicInteger();
+     private final AtomicInteger liveTiles = new AtomicInteger();
+     private final AtomicInteger peakTiles = new AtomicInteger();
+
+     MapTilePyramid(DungeonMapParallel dungeon, Path dir) {
+         this.dungeon = dungeon;
+         this.dir = dir;
+         width = dungeon.getRows();
+         height = dungeon.getColumns();
+         int zoom = 0;
+         while (((long) TILE << zoom) < Math.max(width, height)) zoom++;
+         maxZoom = zoom;
+         colours = new PowerMapRenderer(dungeon); //mana range and colour table of the whole grid
+     }
+
+     int levels() { return maxZoom + 1; }
+
+     int tilesWritten() { return tilesWritten.get(); }
+
+     /** most tiles (map and path planes) held in memory at once */
+     int peakTiles() { return peakTiles.get(); }
+
+     /** writes both pyramids and tiles.json, in pool */
+     void write(ForkJoinPool pool) throws IOException {
+         Files.createDirectories(dir);
+         Planes top = pool.invoke(new TileTask(0, 0, 0));
+         if (top != null) top.release();
+         String metadata = String.format(Locale.ROOT,
+                 "{\n  \"width\": %d,\n  \"height\": %d,\n  \"tileSize\": %d,\n  \"minZoom\": 0,\n  \"maxZoom\": %d,\n"
+                 + "  \"layers\": [\"map\", \"path\"],\n  \"url\": \"{layer}/{z}/{x}/{y}.png\",\n"
+                 + "  \"downsampling\": \"max\",\n  \"manaMin\": %d,\n  \"manaMax\": %d\n}\n",
+                 width, height, TILE, maxZoom, colours.min(), colours.max());
+         Files.write(dir.resolve("tiles.json"), metadata.getBytes(StandardCharsets.UTF_8));
+     }
+
+     // highest mana per pixel, UNEVALUATED where none: the whole map and visited cells only
+     private final class Planes {
+         final int[] map = new int[TILE * TILE];
+         final int[] path = new int[TILE * TILE];
+
+         Planes() {
+             Arrays.fill(map, ManaGrid.UNEVALUATED);
+             Arrays.fill(path, ManaGrid.UNEVALUATED);
+             peakTiles.accumulateAndGet(liveTiles.incrementAndGet(), Math::max);
+         }
+
+         void release() {
+             liveTiles.decrementAndGet();
+         }
+     }
+
+     private class TileTask extends RecursiveTask<Planes> {
+         private final int z, tx, ty;
+
+         TileTask(int z, int tx, int ty) {
+             this.z = z;
+             this.tx = tx;
+             this.ty = ty;
+         }
+
+         // level z image size: each level up halves the full resolution, rounding up
+         private boolean inside(int z, int tx, int ty) {
+             int shift = maxZoom - z;
+             long levelWidth = ((long) width + (1L << shift) - 1) >> shift;
+             long levelHeight = ((long) height + (1L << shift) - 1) >> shift;
+             return (long) tx * TILE < levelWidth && (long) ty * TILE < levelHeight;
+         }
+
+         /** this tile's planes, or null if nothing in it was evaluated */
+         @Override
+         protected Planes compute() {
+             Planes planes = z == maxZoom ? readGrid() : downsample();
+             if (planes != null) {
+                 writeTile("map", planes.map);
+                 writeTile("path", planes.path);
+             }
+             return planes;
+         }
+
+         // image pixel (X, Y) of the full map is grid cell (X, height - 1 - Y)
+         private Planes readGrid() {
+             Planes planes = null;
+             for (int px = 0; px < TILE && tx * TILE + px < width; px++) {
+                 int rowStart = dungeon.cellIndex(tx * TILE + px, 0);
+                 for (int py = 0; py < TILE && ty * TILE + py < height; py++) {
+                     int cell = rowStart + height - 1 - (ty * TILE + py);
+                     int value = dungeon.storedMana(cell);
+                     if (value == ManaGrid.UNEVALUATED) continue;
+                     if (planes == null) planes = new Planes();
+                     planes.map[py * TILE + px] = value;
+                     if (dungeon.visited(cell)) planes.path[py * TILE + px] = value;
+                 }
+             }
+             return planes;
+         }
+
+         private Planes downsample() {
+             TileTask[] children = new TileTask[4];
+             for (int q = 0; q < 4; q++) {
+                 int cx = 2 * tx + (q & 1), cy = 2 * ty + (q >> 1);
+                 if (inside(z + 1, cx, cy)) children[q] = new TileTask(z + 1, cx, cy);
+             }
+             for (int q = 3; q > 0; q--) if (children[q] != null) children[q].fork();
+             Planes planes = null;
+             for (int q = 0; q < 4; q++) {
+                 if (children[q] == null) continue;
+                 Planes child = q == 0 ? children[q].compute() : children[q].join();
+                 if (child == null) continue;
+                 if (planes == null) planes = new Planes();
+                 int offset = (q >> 1) * (TILE / 2) * TILE + (q & 1) * (TILE / 2); //quadrant of this tile
+                 for (int py = 0; py < TILE; py++) {
+                     for (int px = 0; px < TILE; px++) {
+                         int from = py * TILE + px, to = offset + (py >> 1) * TILE + (px >> 1);
+                         planes.map[to] = Math.max(planes.map[to], child.map[from]);
+                         planes.path[to] = Math.max(planes.path[to], child.path[from]);
+                     }
+                 }
+                 child.release();
+             }
+             return planes;
+         }
+
+         private void writeTile(String layer, int[] plane) {
+             BufferedImage image = new BufferedImage(TILE, TILE, BufferedImage.TYPE_INT_RGB);
+             int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+             boolean empty = true;
+             for (int p = 0; p < pixels.length; p++) {
+                 if (plane[p] == ManaGrid.UNEVALUATED) continue; //black
+                 pixels[p] = colours.colour(plane[p]);
+                 empty = false;
+             }
+             if (empty) return; //the path layer of a tile nobody walked through
+             try {
+                 Path file = dir.resolve(layer).resolve(Integer.toString(z)).resolve(Integer.toString(tx)).resolve(ty + ".png");
+                 Files.createDirectories(file.getParent());
+                 PowerMapRenderer.writePng(image, file.toFile());
+                 tilesWritten.incrementAndGet();
+             } catch (IOException e) {
+                 throw new UncheckedIOException("Could not write tile " + layer + "/" + z + "/" + tx + "/" + ty, e);
+             }
+         }
+     }
+ }
@@ -0,0 +1,147 @@
+/**
+ * MortonOrder.java
+ *
+ * Hunt schedule for --order=morton. Hunt indices map to uniformly random start
+ * cells, so a task that runs a range of indices touches the whole grid and misses
+ * cache on almost every first step. Here every hunt gets a Z-order (Morton) key of its
+ * start cell - row and column bits interleaved - and the hunts are sorted by that key,
+ * so a contiguous range of the schedule, and so each ForkJoin leaf, covers one compact
+ * region of the dungeon.
+ *
+ * Each entry is the key in the high bits and the hunt index in the low indexBits; the
+ * key decodes back to the start cell, so the hunts need no StartPositions lookup. Keys
+ * are 64-bit, so any grid fits as long as key and index bits together fit in a long -
+ * 2 * 16 + 31 bits covers every grid up to 65536 cells a side. The sort is a parallel
+ * LSD radix sort on the key bytes: per-chunk digit counts, one prefix sum over
+ * (digit, chunk), then a stable parallel scatter, so equal keys stay in index order.
+ */
+
+ import java.util.stream.IntStream;
+
+ final class MortonOrder {
+
+     private static final int CHUNK = 1 << 16; // entries per parallel task
+     private static final int RADIX_BITS = 8;
+     private static final int BUCKETS = 1 << RADIX_BITS;
+
+     private final long[] entries; // sorted: key << indexBits | hunt index
+     private final int indexBits;
+     private final long indexMask;
+
+     private MortonOrder(long[] entries, int indexBits) {
+         this.entries = entries;
+         this.indexBits = indexBits;
+         this.indexMask = (1L << indexBits) - 1;
+     }
+
+     /**
+      * The hunts of starts in Morton order of their start cells.
+      * @throws IllegalArgumentException if the key and hunt index bits do not fit in 64
+      */
+     static MortonOrder schedule(StartPositions starts, int hunts, int rows, int columns) {
+         int keyBits = 2 * Math.max(1, bits(Math.max(rows, columns) - 1));
+         int indexBits = Math.max(1, bits(hunts - 1));
+         if (keyBits + indexBits > Long.SIZE) {
+             throw new IllegalArgumentException("Morton order of " + hunts + " hunts needs " + (keyBits + indexBits)
+                     + " bits for a " + rows + "x" + columns + " grid, more than 64");
+         }
+         int shift = Long.SIZE - keyBits; // index in the low bits, key in the rest
+         long[] entries = new long[hunts];
+         int chunks = (hunts + CHUNK - 1) / CHUNK;
+         IntStream.range(0, chunks).parallel().forEach(c -> {
+             int first = c * CHUNK, last = Math.min(hunts, first + CHUNK);
+             StartPositions.Cursor start = starts.from(first);
+             for (int i = first; i < last; i++, start.advance()) {
+                 entries[i] = key(start.row(), start.column()) << shift | i;
+             }
+         });
+         return new MortonOrder(sort(entries, shift), shift);
+     }
+
+     private static int bits(int v) {
+         return 32 - Integer.numberOfLeadingZeros(v);
+     }
+
+     static long key(int row, int column) {
+         return spread(row) << 1 | spread(column);
+     }
+
+     /** number of hunts scheduled */
+     int size() {
+         return entries.length;
+     }
+
+     /** the entry at schedule position i, increasing (unsigned) along the schedule */
+     long entry(int i) {
+         return entries[i];
+     }
+
+     int index(int i) {
+         return (int) (entries[i] & indexMask);
+     }
+
+     int row(int i) {
+         return compact(entries[i] >>> indexBits >>> 1);
+     }
+
+     int column(int i) {
+         return compact(entries[i] >>> indexBits);
+     }
+
+     // the 32 low bits of v moved to the even bit positions
+     private static long spread(int v) {
+         long x = v & 0xFFFFFFFFL;
+         x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+         x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+         x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+         x = (x | (x << 2)) & 0x3333333333333333L;
+         x = (x | (x << 1)) & 0x5555555555555555L;
+         return x;
+     }
+
+     // inverse of spread: the even bit positions of v
+     private static int compact(long v) {
+         v &= 0x5555555555555555L;
+         v = (v | (v >>> 1)) & 0x3333333333333333L;
+         v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+         v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+         v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+         v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+         return (int) v;
+     }
+
+     // stable sort of entries by their key above bit keyShift, one pass per RADIX_BITS of key
+     private static long[] sort(long[] entries, int keyShift) {
+         int n = entries.length;
+         int chunks = (n + CHUNK - 1) / CHUNK;
+         long[] from = entries, to = new long[n];
+         for (int shift = keyShift; shift < Long.SIZE; shift += RADIX_BITS) {
+             final int s = shift;
+             final long[] source = from, target = to;
+             int[][] counts = new int[chunks][BUCKETS];
+             IntStream.range(0, chunks).parallel().forEach(c -> {
+                 int[] count = counts[c];
+                 for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                     count[(int) (source[i] >>> s) & (BUCKETS - 1)]++;
+                 }
+             });
+             int offset = 0; //turn counts into each chunk's first slot per digit
+             for (int d = 0; d < BUCKETS; d++) {
+                 for (int c = 0; c < chunks; c++) {
+                     int count = counts[c][d];
+                     counts[c][d] = offset;
+                     offset += count;
+                 }
+             }
+             IntStream.range(0, chunks).parallel().forEach(c -> {
+                 int[] slot = counts[c];
+                 for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                     target[slot[(int) (source[i] >>> s) & (BUCKETS - 1)]++] = source[i];
+                 }
+             });
+             from = target;
+             to = source;
+         }
+         return from;
+     }
+ }
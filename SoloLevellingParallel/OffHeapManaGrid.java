@@ -0,0 +1,95 @@
+/**
+ * OffHeapManaGrid.java
+ *
+ * ManaGrid backend that keeps the mana and visit planes outside the Java heap,
+ * in native memory or in a memory-mapped file (Foreign Memory API, incubating in JDK 17:
+ * compile and run with --add-modules jdk.incubator.foreign).
+ *
+ * Both planes are stored biased so that all-zero memory means "unevaluated, unvisited":
+ * fresh native memory and freshly extended files need no initialisation pass,
+ * and the OS only backs the pages the hunts actually touch.
+ */
+
+ import jdk.incubator.foreign.MemoryHandles;
+ import jdk.incubator.foreign.MemorySegment;
+ import jdk.incubator.foreign.ResourceScope;
+
+ import java.io.IOException;
+ import java.io.RandomAccessFile;
+ import java.io.UncheckedIOException;
+ import java.lang.invoke.VarHandle;
+ import java.nio.ByteOrder;
+ import java.nio.channels.FileChannel;
+ import java.nio.file.Files;
+ import java.nio.file.Path;
+
+ class OffHeapManaGrid implements ManaGrid {
+
+     // (segment, byte offset) -> int
+     private static final VarHandle INT = MemoryHandles.varHandle(int.class, ByteOrder.nativeOrder());
+
+     private final int stride;
+     private final MemorySegment mana;
+     private final MemorySegment visit;
+
+     private OffHeapManaGrid(int stride, MemorySegment planes) {
+         this.stride = stride;
+         long planeBytes = planes.byteSize() / 2;
+         this.mana = planes.asSlice(0, planeBytes);
+         this.visit = planes.asSlice(planeBytes, planeBytes);
+     }
+
+     private static long planesBytes(int rows, int columns) {
+         return 2L * Math.multiplyExact(rows, columns) * Integer.BYTES;
+     }
+
+     /**
+      * Grid in native memory, released when the grid becomes unreachable.
+      * Native allocations count against -XX:MaxDirectMemorySize (default: the heap size).
+      */
+     static OffHeapManaGrid allocate(int rows, int columns) {
+         long bytes = planesBytes(rows, columns);
+         return new OffHeapManaGrid(columns, MemorySegment.allocateNative(bytes, Integer.BYTES, ResourceScope.newImplicitScope()));
+     }
+
+     /**
+      * Grid backed by a memory-mapped file, so the dungeon is bounded by disk rather than RAM.
+      * Any existing file at that path is replaced.
+      */
+     static OffHeapManaGrid map(int rows, int columns, Path file) {
+         long bytes = planesBytes(rows, columns);
+         try {
+             Files.deleteIfExists(file);
+             try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                 raf.setLength(bytes); //sparse file - reads back as zeros
+             }
+             return new OffHeapManaGrid(columns, MemorySegment.mapFile(file, 0, bytes, FileChannel.MapMode.READ_WRITE, ResourceScope.newImplicitScope()));
+         } catch (IOException e) {
+             throw new UncheckedIOException("Could not map grid file " + file, e);
+         }
+     }
+
+     private static long offset(int cell) {
+         return cell * (long) Integer.BYTES;
+     }
+
+     public int getMana(int cell) {
+         return (int) INT.getAcquire(mana, offset(cell)) ^ UNEVALUATED;
+     }
+
+     public boolean publishMana(int cell, int value) {
+         return INT.compareAndSet(mana, offset(cell), 0, value ^ UNEVALUATED);
+     }
+
+     public int getVisit(int cell) {
+         return (int) INT.get(visit, offset(cell)) + UNVISITED;
+     }
+
+     public boolean claimVisit(int cell, int id) {
+         return INT.compareAndSet(visit, offset(cell), 0, id - UNVISITED);
+     }
+
+     public int stride() { return stride; }
+
+     public long allocatedBytes() { return 2 * mana.byteSize(); }
+ }
@@ -0,0 +1,218 @@
+/**
+ * RegionScheduler.java
+ *
+ * Region-affine alternative to the SearchTask recursion, for --scheduler=region.
+ * The dungeon is cut into bands of grid rows (regions), split into one contiguous run of
+ * bands per worker (its home run), and every hunt is routed to the band its start cell
+ * lies in. Each pool thread that picks up a worker task claims a home run - the one of
+ * its ForkJoinWorkerThread.getPoolIndex() if still free - and runs those bands first, so
+ * the cache lines of the grid and visit arrays that a band's hunts touch - including the
+ * paths of hunts converging on the same peak - mostly stay with one thread, and the same
+ * thread gets the same bands again in the second phase of --strategy=bound. A worker that
+ * runs out steals whole bands from the far end of another run. The JVM does not pin
+ * threads to cores, so whether a thread's bands stay in one core's cache is up to the
+ * OS scheduler.
+ *
+ * The hunts are bucketed by band once, with a parallel counting sort that keeps their
+ * schedule order within a band (index order, or Morton order with --order=morton).
+ * Each entry holds the start cell in the high 32 bits and the hunt index in the low 32.
+ * Each worker's run of bands is a deque packed in one AtomicLong, (head << 32 | tail):
+ * the owner takes from the head, thieves from the tail.
+ */
+
+ import java.util.concurrent.ForkJoinPool;
+ import java.util.concurrent.ForkJoinTask;
+ import java.util.concurrent.ForkJoinWorkerThread;
+ import java.util.concurrent.RecursiveTask;
+ import java.util.concurrent.atomic.AtomicInteger;
+ import java.util.concurrent.atomic.AtomicIntegerArray;
+ import java.util.concurrent.atomic.AtomicLong;
+ import java.util.stream.IntStream;
+
+ class RegionScheduler {
+
+     private static final int CHUNK = 1 << 16; // hunts per parallel bucketing task
+
+     private final HuntStore searches;
+     private final DungeonMapParallel dungeon;
+     private final int workers, regions, rowsPerRegion;
+     private final int[] regionStart; // first entry of each region, plus the total at the end
+     private final long[] entries;    // (start cell << 32 | hunt index), grouped by region
+     private final AtomicLong[] deques; // per home run: its remaining regions, (head << 32 | tail)
+     private final AtomicIntegerArray claimed; // per home run: 1 once a worker task has taken it, this run()
+     private final AtomicInteger steals = new AtomicInteger();
+
+     /**
+      * @param workers number of home workers, normally the pool's parallelism
+      * @param regionsPerWorker bands per worker: more balance better, fewer keep more locality
+      */
+     RegionScheduler(HuntStore searches, DungeonMapParallel dungeon, int workers, int regionsPerWorker) {
+         this.searches = searches;
+         this.dungeon = dungeon;
+         this.workers = Math.max(1, workers);
+         int rows = dungeon.getRows();
+         rowsPerRegion = Math.max(1, (rows + this.workers * regionsPerWorker - 1) / (this.workers * regionsPerWorker));
+         regions = (rows + rowsPerRegion - 1) / rowsPerRegion;
+         regionStart = new int[regions + 1];
+         entries = bucket(searches.size());
+         deques = new AtomicLong[this.workers];
+         for (int w = 0; w < this.workers; w++) deques[w] = new AtomicLong();
+         claimed = new AtomicIntegerArray(this.workers);
+     }
+
+     int regions() {
+         return regions;
+     }
+
+     /** regions run by a worker other than their home one, over all run() calls */
+     int steals() {
+         return steals.get();
+     }
+
+     // hunts of chunk c in schedule order: (start cell << 32 | hunt index)
+     private void chunkEntries(int c, long[] out) {
+         int first = c * CHUNK, last = Math.min(searches.size(), first + CHUNK);
+         if (searches.order != null) {
+             MortonOrder order = searches.order;
+             for (int i = first; i < last; i++) {
+                 int cell = dungeon.cellIndex(order.row(i), order.column(i));
+                 out[i - first] = (long) cell << 32 | order.index(i);
+             }
+             return;
+         }
+         StartPositions.Cursor start = searches.starts.from(first);
+         for (int i = first; i < last; i++, start.advance()) {
+             out[i - first] = (long) dungeon.cellIndex(start.row(), start.column()) << 32 | i;
+         }
+     }
+
+     private int regionOf(long entry) {
+         return dungeon.rowOf((int) (entry >>> 32)) / rowsPerRegion;
+     }
+
+     // stable parallel counting sort of the hunts by region
+     private long[] bucket(int hunts) {
+         int chunks = (hunts + CHUNK - 1) / CHUNK;
+         int[][] counts = new int[chunks][regions];
+         IntStream.range(0, chunks).parallel().forEach(c -> {
+             long[] chunk = new long[CHUNK];
+             chunkEntries(c, chunk);
+             for (int i = 0, n = Math.min(CHUNK, hunts - c * CHUNK); i < n; i++) counts[c][regionOf(chunk[i])]++;
+         });
+         int offset = 0; //turn counts into each chunk's first slot per region
+         for (int r = 0; r < regions; r++) {
+             regionStart[r] = offset;
+             for (int c = 0; c < chunks; c++) {
+                 int count = counts[c][r];
+                 counts[c][r] = offset;
+                 offset += count;
+             }
+         }
+         regionStart[regions] = offset;
+         long[] sorted = new long[hunts];
+         IntStream.range(0, chunks).parallel().forEach(c -> {
+             long[] chunk = new long[CHUNK];
+             chunkEntries(c, chunk);
+             int[] slot = counts[c];
+             for (int i = 0, n = Math.min(CHUNK, hunts - c * CHUNK); i < n; i++) sorted[slot[regionOf(chunk[i])]++] = chunk[i];
+         });
+         return sorted;
+     }
+
+     /**
+      * Runs all the hunts, one task per home worker, and returns the best.
+      * With a bound, only the hunts of the given phase run (see SearchTask).
+      */
+     DungeonHunterParallel.SearchResult run(ForkJoinPool pool, BranchAndBound bound, boolean hotPhase) {
+         for (int w = 0; w < workers; w++) {
+             long head = (long) w * regions / workers, tail = (long) (w + 1) * regions / workers;
+             deques[w].set(head << 32 | tail);
+             claimed.set(w, 0);
+         }
+         WorkerTask[] tasks = new WorkerTask[workers];
+         for (int w = 0; w < workers; w++) tasks[w] = new WorkerTask(bound, hotPhase);
+         return pool.invoke(new RecursiveTask<DungeonHunterParallel.SearchResult>() {
+             @Override
+             protected DungeonHunterParallel.SearchResult compute() {
+                 ForkJoinTask.invokeAll(tasks);
+                 DungeonHunterParallel.SearchResult best = tasks[0].join();
+                 for (int w = 1; w < workers; w++) {
+                     DungeonHunterParallel.SearchResult result = tasks[w].join();
+                     if (result.max > best.max) best = result;
+                 }
+                 return best;
+             }
+         });
+     }
+
+     // the home run for the current thread: its pool index's if free, else the next free one
+     private int claimHome() {
+         Thread thread = Thread.currentThread();
+         int preferred = thread instanceof ForkJoinWorkerThread ? ((ForkJoinWorkerThread) thread).getPoolIndex() % workers : 0;
+         for (int i = 0; i < workers; i++) {
+             int w = (preferred + i) % workers;
+             if (claimed.compareAndSet(w, 0, 1)) return w;
+         }
+         return preferred; //more tasks than runs: cannot happen, there is one task per run
+     }
+
+     // next region from the head of worker w's own run, or -1
+     private int take(int w) {
+         while (true) {
+             long d = deques[w].get();
+             int head = (int) (d >>> 32), tail = (int) d;
+             if (head >= tail) return -1;
+             if (deques[w].compareAndSet(d, (long) (head + 1) << 32 | tail)) return head;
+         }
+     }
+
+     // last region of victim's run, or -1
+     private int steal(int victim) {
+         while (true) {
+             long d = deques[victim].get();
+             int head = (int) (d >>> 32), tail = (int) d;
+             if (head >= tail) return -1;
+             if (deques[victim].compareAndSet(d, (long) head << 32 | (tail - 1))) return tail - 1;
+         }
+     }
+
+     private class WorkerTask extends RecursiveTask<DungeonHunterParallel.SearchResult> {
+         private final BranchAndBound bound;
+         private final boolean hotPhase;
+
+         WorkerTask(BranchAndBound bound, boolean hotPhase) {
+             this.bound = bound;
+             this.hotPhase = hotPhase;
+         }
+
+         @Override
+         protected DungeonHunterParallel.SearchResult compute() {
+             int localMax = Integer.MIN_VALUE;
+             int localFinder = -1;
+             HuntParallel hunt = new HuntParallel(searches, dungeon, bound); // one hunt object per worker, reused
+             int home = claimHome(), victim = home;
+             while (true) {
+                 int region = take(home);
+                 while (region < 0 && (victim = (victim + 1) % workers) != home) { //own run done: steal
+                     region = steal(victim);
+                     if (region >= 0) {
+                         steals.incrementAndGet();
+                         victim = (victim + workers - 1) % workers; //try the same victim again next time
+                     }
+                 }
+                 if (region < 0) break;
+                 for (int k = regionStart[region]; k < regionStart[region + 1]; k++) {
+                     int cell = (int) (entries[k] >>> 32), index = (int) entries[k];
+                     int row = dungeon.rowOf(cell), col = dungeon.columnOf(cell);
+                     if (bound != null && bound.isHot(row, col) != hotPhase) continue; //other phase
+                     int result = hunt.findManaPeak(index, row, col);
+                     if (result > localMax) {
+                         localMax = result;
+                         localFinder = index;
+                     }
+                 }
+             }
+             return new DungeonHunterParallel.SearchResult(localMax, localFinder);
+         }
+     }
+ }
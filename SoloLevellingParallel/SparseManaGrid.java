@@ -0,0 +1,128 @@
+/**
+ * SparseManaGrid.java
+ *
+ * ManaGrid backend made of 64x64 tiles that are only allocated when a cell in
+ * them is first written. Reads of untouched tiles answer "unevaluated, unvisited"
+ * without allocating, so memory and construction time grow with the explored area
+ * instead of the whole dungeon - low density runs only touch a few percent of it.
+ *
+ * The row stride is rounded up to a power of two so that a cell index splits
+ * into tile and in-tile offsets with shifts and masks only.
+ * Tiles are published with a CAS on the tile table: if two hunts touch the same
+ * new tile at once, one allocation wins and the other is discarded.
+ * Cells inside a tile follow the same CAS protocol as FlatManaGrid.
+ *
+ * The sentinel ring is not published cell by cell, which would allocate every tile
+ * along the edge: reads of an untouched tile answer BORDER for ring cells, and a
+ * tile that crosses the ring gets its ring cells set to BORDER when it is allocated.
+ */
+
+ import java.lang.invoke.MethodHandles;
+ import java.lang.invoke.VarHandle;
+ import java.util.Arrays;
+ import java.util.concurrent.atomic.AtomicReferenceArray;
+
+ class SparseManaGrid implements ManaGrid {
+
+     static final int TILE_SHIFT = 6; //64x64 cells per tile
+     static final int TILE_SIZE = 1 << TILE_SHIFT;
+     private static final int TILE_MASK = TILE_SIZE - 1;
+     private static final int TILE_CELLS = TILE_SIZE * TILE_SIZE;
+     private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+     private final int rows;
+     private final int columns;
+     private final int strideShift; //stride == 1 << strideShift
+     private final int tileColumns; //tiles per tile-row
+     // one int[2 * TILE_CELLS] per tile: mana plane then visit plane
+     private final AtomicReferenceArray<int[]> tiles;
+
+     SparseManaGrid(int rows, int columns) {
+         this.rows = rows;
+         this.columns = columns;
+         strideShift = Math.max(TILE_SHIFT, 32 - Integer.numberOfLeadingZeros(columns - 1));
+         tileColumns = 1 << (strideShift - TILE_SHIFT);
+         int tileRows = (rows + TILE_MASK) >> TILE_SHIFT;
+         if (((long) tileRows << TILE_SHIFT) << strideShift > Integer.MAX_VALUE) {
+             throw new IllegalArgumentException("Dungeon too large for the sparse grid");
+         }
+         tiles = new AtomicReferenceArray<>(tileRows * tileColumns);
+     }
+
+     private int tileOf(int cell) {
+         int x = cell >>> strideShift;
+         int y = cell & ((1 << strideShift) - 1);
+         return (x >>> TILE_SHIFT) * tileColumns + (y >>> TILE_SHIFT);
+     }
+
+     private int offsetInTile(int cell) {
+         int x = cell >>> strideShift;
+         return ((x & TILE_MASK) << TILE_SHIFT) | (cell & TILE_MASK);
+     }
+
+     /** tile holding the cell, allocating and publishing it on first touch */
+     private int[] tileForWrite(int cell) {
+         int index = tileOf(cell);
+         int[] tile = tiles.getAcquire(index);
+         if (tile != null) return tile;
+
+         int[] fresh = new int[2 * TILE_CELLS];
+         Arrays.fill(fresh, 0, TILE_CELLS, UNEVALUATED);
+         Arrays.fill(fresh, TILE_CELLS, 2 * TILE_CELLS, UNVISITED);
+         fillBorder(fresh, index);
+         if (tiles.compareAndSet(index, null, fresh)) return fresh;
+         return tiles.get(index); //another thread published first
+     }
+
+     // is the cell in the first or last row or column?
+     private boolean onBorder(int cell) {
+         int x = cell >>> strideShift;
+         int y = cell & ((1 << strideShift) - 1);
+         return x == 0 || x == rows - 1 || y == 0 || y == columns - 1;
+     }
+
+     /** sets the ring cells of a fresh tile to BORDER */
+     private void fillBorder(int[] tile, int index) {
+         int x0 = (index / tileColumns) << TILE_SHIFT;
+         int y0 = (index % tileColumns) << TILE_SHIFT;
+         for (int x = 0; x < TILE_SIZE; x++) {
+             for (int y = 0; y < TILE_SIZE; y++) {
+                 int row = x0 + x, column = y0 + y;
+                 if (row == 0 || row == rows - 1 || column == 0 || column == columns - 1) {
+                     tile[(x << TILE_SHIFT) | y] = BORDER;
+                 }
+             }
+         }
+     }
+
+     public int getMana(int cell) {
+         int[] tile = tiles.getAcquire(tileOf(cell));
+         if (tile == null) return onBorder(cell) ? BORDER : UNEVALUATED;
+         return (int) CELL.getAcquire(tile, offsetInTile(cell));
+     }
+
+     public boolean publishMana(int cell, int value) {
+         return CELL.compareAndSet(tileForWrite(cell), offsetInTile(cell), UNEVALUATED, value);
+     }
+
+     public int getVisit(int cell) {
+         int[] tile = tiles.getAcquire(tileOf(cell));
+         return tile == null ? UNVISITED : tile[TILE_CELLS + offsetInTile(cell)];
+     }
+
+     public boolean claimVisit(int cell, int id) {
+         return CELL.compareAndSet(tileForWrite(cell), TILE_CELLS + offsetInTile(cell), UNVISITED, id);
+     }
+
+     public boolean hasBorder() { return true; }
+
+     public int stride() { return 1 << strideShift; }
+
+     public long allocatedBytes() {
+         long count = 0;
+         for (int i = 0; i < tiles.length(); i++) {
+             if (tiles.get(i) != null) count++;
+         }
+         return count * 2 * TILE_CELLS * Integer.BYTES;
+     }
+ }
@@ -0,0 +1,181 @@
+/**
+ * StartPositions.java
+ *
+ * The hunts' random start points - exactly the sequence the serial DungeonHunter
+ * draws with one java.util.Random, rand.nextInt(rows) then rand.nextInt(columns)
+ * per hunt - computed on demand for any hunt index instead of in one serial loop.
+ *
+ * java.util.Random is a 48-bit LCG, s' = (a s + c) mod 2^48, so the state after n draws
+ * is an affine map of the seed that can be composed in O(log n) (jump-ahead).
+ * The only complication is nextInt's rejection sampling: a raw draw u >= bound * floor(2^31 / bound)
+ * is discarded and redrawn, shifting every later position by one raw draw.
+ * Such draws are rare (probability below bound / 2^31), so the constructor finds them
+ * once with a parallel scan of the raw stream and keeps their indices; the position of
+ * hunt i is then a jump to raw draw 2i plus the number of rejections before it.
+ */
+
+ import java.util.Arrays;
+ import java.util.stream.IntStream;
+
+ class StartPositions {
+
+     private static final long MULTIPLIER = 0x5DEECE66DL; // java.util.Random's LCG
+     private static final long ADDEND = 0xBL;
+     private static final long MASK = (1L << 48) - 1;
+     private static final int SCAN_CHUNK = 1 << 16; // raw draws per parallel scan task
+
+     private final long initialState;
+     private final int rows, columns;
+     private final long[] rejected; // raw draw indices discarded by nextInt, ascending
+
+     /**
+      * @param seed as passed to new Random(seed)
+      * @param hunts number of hunts (two draws each) that will be asked for
+      */
+     StartPositions(long seed, int hunts, int rows, int columns) {
+         this.initialState = (seed ^ MULTIPLIER) & MASK; //Random's initial scramble
+         this.rows = rows;
+         this.columns = columns;
+         this.rejected = findRejections(2L * hunts);
+     }
+
+     private static boolean isPowerOfTwo(int bound) {
+         return (bound & (bound - 1)) == 0;
+     }
+
+     // raw values at or above this are redrawn by nextInt(bound)
+     private static long rejectionLimit(int bound) {
+         if (isPowerOfTwo(bound)) return 1L << 31; //never rejects
+         return (1L << 31) / bound * bound;
+     }
+
+     /** LCG state after n steps from state: the affine map (a, c)^n by squaring */
+     private static long jump(long state, long n) {
+         long mul = 1, add = 0;            // accumulated map
+         long stepMul = MULTIPLIER, stepAdd = ADDEND; // map for 2^k steps
+         while (n > 0) {
+             if ((n & 1) != 0) {
+                 mul = (mul * stepMul) & MASK;
+                 add = (add * stepMul + stepAdd) & MASK;
+             }
+             stepAdd = (stepAdd * (stepMul + 1)) & MASK;
+             stepMul = (stepMul * stepMul) & MASK;
+             n >>>= 1;
+         }
+         return (state * mul + add) & MASK;
+     }
+
+     private static long step(long state) {
+         return (state * MULTIPLIER + ADDEND) & MASK;
+     }
+
+     // Random.next(31) from the state after the step
+     private static int raw(long state) {
+         return (int) (state >>> (48 - 31));
+     }
+
+     // Random.nextInt(bound) for an accepted raw value
+     private static int bounded(int u, int bound) {
+         if (isPowerOfTwo(bound)) return (int) ((bound * (long) u) >> 31);
+         return u % bound;
+     }
+
+     /*
+      * Raw draw j is for a row when the number of accepted draws before it is even, for a
+      * column otherwise, so whether it is rejected depends on the earlier rejections.
+      * The parallel scan collects every draw that could be rejected by either bound; a
+      * sequential pass over those few candidates then keeps the ones actually rejected.
+      * Each rejection consumes one more raw draw, so the scan is extended until it covers
+      * all the draws the hunts use.
+      */
+     private long[] findRejections(long accepted) {
+         long candidateLimit = Math.min(rejectionLimit(rows), rejectionLimit(columns));
+         long[] found = new long[0];
+         int count = 0;
+         long scanned = 0;
+         while (scanned < accepted + count) {
+             long from = scanned, to = accepted + count;
+             long[] candidates = scan(from, to, candidateLimit);
+             found = Arrays.copyOf(found, count + candidates.length);
+             for (long j : candidates) {
+                 int bound = ((j - count) & 1) == 0 ? rows : columns;
+                 if (raw(jump(initialState, j + 1)) >= rejectionLimit(bound)) found[count++] = j;
+             }
+             scanned = to;
+         }
+         return Arrays.copyOf(found, count);
+     }
+
+     // raw draws j in [from, to) with value >= limit, ascending
+     private long[] scan(long from, long to, long limit) {
+         int chunks = (int) ((to - from + SCAN_CHUNK - 1) / SCAN_CHUNK);
+         return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+             long first = from + (long) c * SCAN_CHUNK;
+             long last = Math.min(to, first + SCAN_CHUNK);
+             long state = jump(initialState, first);
+             long[] hits = new long[4];
+             int n = 0;
+             for (long j = first; j < last; j++) {
+                 state = step(state);
+                 if (raw(state) < limit) continue;
+                 if (n == hits.length) hits = Arrays.copyOf(hits, 2 * n);
+                 hits[n++] = j;
+             }
+             return Arrays.copyOf(hits, n);
+         }).flatMapToLong(Arrays::stream).toArray();
+     }
+
+     // raw index of the accepted draw number a: a plus the rejections that come before it
+     private long rawIndex(long a) {
+         int lo = 0, hi = rejected.length; //count rejections k with rejected[k] - k <= a
+         while (lo < hi) {
+             int mid = (lo + hi) >>> 1;
+             if (rejected[mid] - mid <= a) lo = mid + 1;
+             else hi = mid;
+         }
+         return a + lo;
+     }
+
+     /** start points of hunts first, first + 1, ... in order, from a single jump */
+     Cursor from(int first) {
+         return new Cursor(2L * first);
+     }
+
+     /** walks the start points hunt by hunt; row()/column() describe the current hunt */
+     final class Cursor {
+         private long state;      // LCG state before the next raw draw
+         private long next;       // raw index of the next raw draw
+         private int nextRejected; // first entry of rejected at or after next
+         private int row, column;
+
+         private Cursor(long accepted) {
+             next = rawIndex(accepted);
+             state = jump(initialState, next);
+             int k = Arrays.binarySearch(rejected, next);
+             nextRejected = k >= 0 ? k : -k - 1;
+             advance();
+         }
+
+         private int draw(int bound) {
+             while (true) {
+                 state = step(state);
+                 long j = next++;
+                 if (nextRejected < rejected.length && rejected[nextRejected] == j) {
+                     nextRejected++;
+                     continue;
+                 }
+                 return bounded(raw(state), bound);
+             }
+         }
+
+         /** moves to the next hunt */
+         void advance() {
+             row = draw(rows);
+             column = draw(columns);
+         }
+
+         int row() { return row; }
+
+         int column() { return column; }
+     }
+ }
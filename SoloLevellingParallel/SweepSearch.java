@@ -0,0 +1,64 @@
+/**
+ * SweepSearch.java
+ *
+ * Exhaustive search for --strategy=sweep: evaluates every cell of the dungeon and
+ * returns the global maximum, with no hill climbing at all. At high densities the
+ * hunts evaluate most of the grid anyway, but in random-walk order; the sweep reads
+ * it as a linear stream instead.
+ *
+ * A ForkJoin recursion splits the rows into tiles of ROW_TILE rows; each leaf evaluates
+ * its rows strip by strip with ManaKernel.evaluateStrip (SIMD batches when the Vector API
+ * is available) into one reused buffer, and the leaves' maxima are combined on the way
+ * back up (parallel argmax). Batch values can be BATCH_TOLERANCE below the exact ones,
+ * so every cell within that of the best so far is re-evaluated with the scalar formula,
+ * and the result is exact. Ties go to the first cell in row-major order.
+ * The mana values are not stored in the grid - the batch values are not exact - so the
+ * cells swept are only counted as evaluated, and there are no maps to draw.
+ */
+
+ import java.util.concurrent.RecursiveTask;
+
+ class SweepSearch extends RecursiveTask<DungeonHunterParallel.SearchResult> {
+
+     static final int ROW_TILE = 16; //rows per leaf task
+
+     private final DungeonMapParallel dungeon;
+     private final int firstRow, endRow;
+
+     /** sweeps rows [firstRow, endRow); the result's finder is the cell of the maximum (cellIndex) */
+     SweepSearch(DungeonMapParallel dungeon, int firstRow, int endRow) {
+         this.dungeon = dungeon;
+         this.firstRow = firstRow;
+         this.endRow = endRow;
+     }
+
+     @Override
+     protected DungeonHunterParallel.SearchResult compute() {
+         if (endRow - firstRow > ROW_TILE) {
+             int mid = (firstRow + endRow) >>> 1;
+             SweepSearch top = new SweepSearch(dungeon, firstRow, mid);
+             top.fork();
+             DungeonHunterParallel.SearchResult bottom = new SweepSearch(dungeon, mid, endRow).compute();
+             DungeonHunterParallel.SearchResult best = top.join();
+             return bottom.max > best.max ? bottom : best; //on a tie the earlier rows win
+         }
+
+         ManaKernel kernel = dungeon.getKernel();
+         int columns = dungeon.getColumns();
+         int[] strip = new int[columns];
+         int max = Integer.MIN_VALUE, bestCell = -1;
+         for (int x = firstRow; x < endRow; x++) {
+             kernel.evaluateStrip(x, 0, columns, strip);
+             for (int y = 0; y < columns; y++) {
+                 if (strip[y] + ManaKernel.BATCH_TOLERANCE < max) continue;
+                 int exact = kernel.fixedPoint(x, y);
+                 if (exact > max) {
+                     max = exact;
+                     bestCell = dungeon.cellIndex(x, y);
+                 }
+             }
+         }
+         dungeon.getCounters().add(HuntCounters.Counter.CELLS_EVALUATED, (long) (endRow - firstRow) * columns);
+         return new DungeonHunterParallel.SearchResult(max, bestCell);
+     }
+ }
@@ -0,0 +1,93 @@
+/**
+ * VectorManaKernel.java
+ *
+ * SIMD version of ManaKernel.mana for a strip of cells in one grid row, on the Vector API
+ * (incubating in JDK 17: compile and run with --add-modules jdk.incubator.vector). Only
+ * loaded through ManaKernel.evaluateStrip, which falls back to the scalar loop when the
+ * module is not available.
+ *
+ * The lanes follow the scalar formula operation by operation; only the vector
+ * sin/cos/exp differ from Math's by a few ulps, so a fixed-point result is either
+ * identical or off by one unit (see ManaKernel.BATCH_TOLERANCE).
+ */
+
+ import jdk.incubator.vector.DoubleVector;
+ import jdk.incubator.vector.IntVector;
+ import jdk.incubator.vector.VectorOperators;
+ import jdk.incubator.vector.VectorShape;
+ import jdk.incubator.vector.VectorSpecies;
+
+ final class VectorManaKernel {
+
+     private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+     // int lanes in half the bits: same lane count as SPECIES
+     private static final VectorSpecies<Integer> INT_SPECIES =
+             VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+     private static final double HALF_PI = Math.PI / 2;
+
+     private VectorManaKernel() { }
+
+     /**
+      * Writes the fixed-point mana of cells (x, y0 .. y0+length-1) to out[0 .. length-1].
+      * Whole vectors use plain (unmasked) loads; the tail is finished with the scalar formula.
+      */
+     static void evaluateStrip(ManaKernel k, int x, int y0, int length, int[] out) {
+         DoubleVector xCoord = DoubleVector.broadcast(SPECIES, k.xCoord[x]);
+         DoubleVector xCos5 = DoubleVector.broadcast(SPECIES, k.xCos5[x]);
+         DoubleVector xHalf = DoubleVector.broadcast(SPECIES, k.xHalf[x]);
+         DoubleVector xSin6 = DoubleVector.broadcast(SPECIES, k.xSin6[x]);
+         DoubleVector xOneHalf = DoubleVector.broadcast(SPECIES, k.xOneHalf[x]);
+         DoubleVector xSin = DoubleVector.broadcast(SPECIES, k.xSin[x]);
+         DoubleVector xBossGap = DoubleVector.broadcast(SPECIES, k.xBossGap[x]);
+         DoubleVector xBossDist = DoubleVector.broadcast(SPECIES, k.xBossDist[x]);
+
+         int i = 0;
+         for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+             int y = y0 + i;
+             DoubleVector mana = mana(xCoord, xCos5, xHalf, xSin6, xOneHalf, xSin, xBossGap, xBossDist,
+                     DoubleVector.fromArray(SPECIES, k.yCoord, y),
+                     DoubleVector.fromArray(SPECIES, k.ySin5, y),
+                     DoubleVector.fromArray(SPECIES, k.yThird, y),
+                     DoubleVector.fromArray(SPECIES, k.yEighth, y),
+                     DoubleVector.fromArray(SPECIES, k.yCos4, y),
+                     DoubleVector.fromArray(SPECIES, k.yLog, y),
+                     DoubleVector.fromArray(SPECIES, k.ySin, y),
+                     DoubleVector.fromArray(SPECIES, k.yBossGap, y),
+                     DoubleVector.fromArray(SPECIES, k.yBossDist, y));
+             toFixedPoint(mana).intoArray(out, i);
+         }
+         for (; i < length; i++) out[i] = k.fixedPoint(x, y0 + i);
+     }
+
+     // the ManaKernel.mana formula, lane by lane, from the per-row (x) and per-column (y) table values
+     private static DoubleVector mana(DoubleVector xCoord, DoubleVector xCos5, DoubleVector xHalf,
+             DoubleVector xSin6, DoubleVector xOneHalf, DoubleVector xSin, DoubleVector xBossGap,
+             DoubleVector xBossDist, DoubleVector yCoord, DoubleVector ySin5, DoubleVector yThird,
+             DoubleVector yEighth, DoubleVector yCos4, DoubleVector yLog, DoubleVector ySin,
+             DoubleVector yBossGap, DoubleVector yBossDist) {
+         DoubleVector distanceSquared = xBossDist.add(yBossDist);
+
+         DoubleVector a = xCoord.add(ySin5).add(HALF_PI)
+                 .lanewise(VectorOperators.SIN).mul(2)
+                 .mul(yCoord.add(xCos5).add(HALF_PI).div(2.0).lanewise(VectorOperators.COS));
+         DoubleVector b = xHalf.add(yThird).add(xSin6).add(HALF_PI)
+                 .lanewise(VectorOperators.SIN).mul(0.7);
+         DoubleVector c = xOneHalf.sub(yEighth).add(yCos4)
+                 .lanewise(VectorOperators.SIN).mul(0.3);
+         DoubleVector e = xCoord.mul(yCoord).div(4.0).add(xSin)
+                 .lanewise(VectorOperators.SIN).mul(0.5);
+         DoubleVector f = xCoord.add(yCoord).div(5.0).add(ySin)
+                 .lanewise(VectorOperators.COS).mul(1.5);
+         DoubleVector g = xBossGap.add(yBossGap).mul(-0.03)
+                 .lanewise(VectorOperators.EXP).mul(3.0);
+         DoubleVector h = distanceSquared.mul(-0.01).lanewise(VectorOperators.EXP).mul(8.0);
+         DoubleVector j = DoubleVector.broadcast(SPECIES, 2.0).div(distanceSquared.mul(0.05).add(1.0));
+
+         return a.add(b).add(c).add(yLog).add(e).add(f).add(g).add(h).add(j);
+     }
+
+     // D2I truncates like the scalar (int) cast
+     private static IntVector toFixedPoint(DoubleVector mana) {
+         return (IntVector) mana.mul(DungeonMapParallel.PRECISION).convertShape(VectorOperators.D2I, INT_SPECIES, 0);
+     }
+ }
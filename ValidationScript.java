@@ -10,9 +10,236 @@ public class ValidationScript {
     private static StringBuilder timingResults = new StringBuilder();
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("kernel")) {
+            validateBatchKernel();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("starts")) {
+            validateStartPositions();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("cache")) {
+            validateManaCache();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("basins")) {
+            validateBoundBasins();
+            return;
+        }
         validateCorrectness();
     }
 
+    // checks the batch (SIMD) and fast-tier mana paths against the scalar ManaKernel.fixedPoint on every cell,
+    // and that every cell lies within its BranchAndBound tile bounds
+    public static void validateBatchKernel(){
+        int totalTests = 0;
+        int passedTests = 0;
+        System.out.println("Vector API available: " + ManaKernel.VECTOR_AVAILABLE);
+
+        for (int gridSize : new int[]{20, 100, 300}){
+            for (int seed : SEEDS){
+                totalTests++;
+                DungeonMapParallel dungeon = new DungeonMapParallel(-gridSize, gridSize, -gridSize, gridSize, seed);
+                ManaKernel kernel = dungeon.getKernel();
+                int rows = dungeon.getRows(), columns = dungeon.getColumns();
+                int[] strip = new int[columns];
+                long mismatches = 0;
+                int maxDiff = 0;
+                int maxApproxDiff = 0;
+                BranchAndBound bound = new BranchAndBound(dungeon);
+                long outsideTile = 0; //cells whose mana falls outside their tile's bounds
+
+                for (int x = 0; x < rows; x++){
+                    kernel.evaluateStrip(x, 0, columns, strip);
+                    for (int y = 0; y < columns; y++){
+                        int diff = Math.abs(strip[y] - kernel.fixedPoint(x, y));
+                        if (diff != 0) mismatches++;
+                        maxDiff = Math.max(maxDiff, diff);
+                        maxApproxDiff = Math.max(maxApproxDiff,
+                                Math.abs(kernel.approxFixedPoint(x, y) - kernel.fixedPoint(x, y)));
+                        int[] tile = bound.tileBounds(x, y);
+                        if (kernel.fixedPoint(x, y) < tile[0] || strip[y] < tile[0]
+                                || kernel.fixedPoint(x, y) > tile[1] || strip[y] > tile[1]) outsideTile++;
+                    }
+                }
+
+                boolean testPassed = maxDiff <= ManaKernel.BATCH_TOLERANCE && maxApproxDiff <= kernel.approxTolerance
+                        && outsideTile == 0;
+                if (testPassed) passedTests++;
+                System.out.printf("Kernel test %d: Grid=%d, Seed=%d -> %d/%d cells differ, max diff %d, fast tier max diff %d (bound %d), %d outside tile bounds %s\n",
+                        totalTests, gridSize, seed, mismatches, (long) rows * columns, maxDiff,
+                        maxApproxDiff, kernel.approxTolerance, outsideTile, testPassed ? "✅" : "❌");
+            }
+        }
+        System.out.printf("=== KERNEL RESULTS: %d/%d test passed (tolerance %d) ===\n", passedTests, totalTests, ManaKernel.BATCH_TOLERANCE);
+    }
+
+    // checks StartPositions against java.util.Random, read from several offsets, including bounds that reject often,
+    // and the MortonOrder schedule of the same starts
+    public static void validateStartPositions(){
+        int totalTests = 0;
+        int passedTests = 0;
+        int hunts = 100000;
+        int[][] bounds = {{1000, 1000}, {1024, 1024}, {70000, 70000}, {(1 << 30) + 1, (1 << 30) + 1}, {(1 << 30) + 1, 7}};
+
+        for (int[] bound : bounds){
+            for (int seed : SEEDS){
+                totalTests++;
+                java.util.Random rand = new java.util.Random(seed);
+                int[] rows = new int[hunts], columns = new int[hunts];
+                for (int i = 0; i < hunts; i++){
+                    rows[i] = rand.nextInt(bound[0]);
+                    columns[i] = rand.nextInt(bound[1]);
+                }
+
+                StartPositions starts = new StartPositions(seed, hunts, bound[0], bound[1]);
+                long mismatches = 0;
+                for (int first : new int[]{0, 1, hunts / 3, hunts - 2}){
+                    StartPositions.Cursor cursor = starts.from(first);
+                    for (int i = first; i < hunts; i++, cursor.advance()){
+                        if (cursor.row() != rows[i] || cursor.column() != columns[i]) mismatches++;
+                    }
+                }
+                //MortonOrder: a sorted permutation of the same starts, or refused when key and index need over 64 bits
+                int keyBits = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(bound[0], bound[1]) - 1));
+                boolean fits = keyBits + (32 - Integer.numberOfLeadingZeros(hunts - 1)) <= 64;
+                try {
+                    MortonOrder order = MortonOrder.schedule(starts, hunts, bound[0], bound[1]);
+                    if (!fits || order.size() != hunts) mismatches++;
+                    boolean[] seen = new boolean[hunts];
+                    for (int k = 0; k < order.size(); k++){
+                        int i = order.index(k);
+                        if (seen[i] || order.row(k) != rows[i] || order.column(k) != columns[i]
+                                || (k > 0 && Long.compareUnsigned(order.entry(k), order.entry(k - 1)) <= 0)) mismatches++;
+                        seen[i] = true;
+                    }
+                } catch (IllegalArgumentException e){
+                    if (fits) mismatches++;
+                }
+
+                boolean testPassed = mismatches == 0;
+                if (testPassed) passedTests++;
+                System.out.printf("Start test %d: Bounds=%dx%d, Seed=%d -> %d mismatches %s\n",
+                        totalTests, bound[0], bound[1], seed, mismatches, testPassed ? "✅" : "❌");
+            }
+        }
+        System.out.printf("=== START POSITION RESULTS: %d/%d test passed ===\n", passedTests, totalTests);
+    }
+
+    // checks that ManaCache gives back exactly the values put in a previous open, clears a damaged block,
+    // and starts empty for a dungeon with another mana function
+    public static void validateManaCache(){
+        int totalTests = 0;
+        int passedTests = 0;
+        try {
+            java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("mana-cache");
+            for (int gridSize : new int[]{20, 100}){
+                for (int seed : SEEDS){
+                    totalTests++;
+                    DungeonMapParallel dungeon = new DungeonMapParallel(-gridSize, gridSize, -gridSize, gridSize, seed);
+                    ManaKernel kernel = dungeon.getKernel();
+                    int rows = dungeon.getRows(), columns = dungeon.getColumns();
+                    long mismatches = 0;
+
+                    ManaCache cache = ManaCache.open(dir, gridSize, seed, dungeon);
+                    boolean fresh = cache.rebuilt();
+                    for (int x = 0; x < rows; x++){
+                        for (int y = (x % 3); y < columns; y += 3) cache.put(x, y, kernel.fixedPoint(x, y));
+                    }
+                    cache.close();
+
+                    cache = ManaCache.open(dir, gridSize, seed, dungeon); //every third cell, the rest empty
+                    for (int x = 0; x < rows; x++){
+                        for (int y = 0; y < columns; y++){
+                            int expected = (y % 3 == x % 3) ? kernel.fixedPoint(x, y) : ManaGrid.UNEVALUATED;
+                            if (cache.get(x, y) != expected) mismatches++;
+                        }
+                    }
+                    boolean reopened = !cache.rebuilt() && cache.blocksDropped() == 0 && cache.blocksLoaded() > 0;
+                    java.nio.file.Path file = cache.file();
+                    cache.close();
+
+                    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")){ //damage the last value
+                        long last = raf.length() - Integer.BYTES;
+                        raf.seek(last);
+                        int value = raf.readInt();
+                        raf.seek(last);
+                        raf.writeInt(value ^ 0x5A5A);
+                    }
+                    cache = ManaCache.open(dir, gridSize, seed, dungeon);
+                    boolean dropped = cache.blocksDropped() == 1 && cache.get(rows - 1, columns - 1) == ManaGrid.UNEVALUATED
+                            && cache.get(0, 0) == kernel.fixedPoint(0, 0);
+                    cache.close();
+
+                    DungeonMapParallel other = new DungeonMapParallel(-gridSize, gridSize, -gridSize, gridSize, seed + 100);
+                    cache = ManaCache.open(dir, gridSize, seed, other); //same file name, other boss: rebuilt
+                    boolean rebuilt = cache.rebuilt() && cache.get(0, 0) == ManaGrid.UNEVALUATED;
+                    cache.close();
+
+                    boolean testPassed = fresh && mismatches == 0 && reopened && dropped && rebuilt;
+                    if (testPassed) passedTests++;
+                    System.out.printf("Cache test %d: Grid=%d, Seed=%d -> %d mismatches, damaged block dropped: %b, other dungeon rebuilt: %b %s\n",
+                            totalTests, gridSize, seed, mismatches, dropped, rebuilt, testPassed ? "✅" : "❌");
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Cache test failed: " + e.getMessage() + " ❌");
+        }
+        System.out.printf("=== MANA CACHE RESULTS: %d/%d test passed ===\n", passedTests, totalTests);
+    }
+
+    // runs the hunts with --strategy=bound and checks that finalCell holds only local maxima - pruned hunts
+    // negative - and that the best peak is the one the hunts find without the bound
+    public static void validateBoundBasins(){
+        int totalTests = 0;
+        int passedTests = 0;
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool();
+        for (int gridSize : new int[]{50, 100, 200}){
+            for (int seed : SEEDS){
+                totalTests++;
+                DungeonMapParallel dungeon = new DungeonMapParallel(-gridSize, gridSize, -gridSize, gridSize, seed);
+                ManaKernel kernel = dungeon.getKernel();
+                int rows = dungeon.getRows(), columns = dungeon.getColumns();
+                int hunts = (int) (0.2 * (gridSize * 2) * (gridSize * 2) * DungeonMapParallel.RESOLUTION);
+                HuntStore store = new HuntStore(hunts, new StartPositions(seed, hunts, rows, columns));
+                BranchAndBound bound = new BranchAndBound(dungeon);
+                DungeonHunterParallel.SearchResult hot = pool.invoke(new DungeonHunterParallel.SearchTask(store, dungeon, bound, true, 0, hunts, 64));
+                bound.prepare(pool);
+                DungeonHunterParallel.SearchResult rest = pool.invoke(new DungeonHunterParallel.SearchTask(store, dungeon, bound, false, 0, hunts, 64));
+                int max = Math.max(hot.max, rest.max);
+
+                long notPeaks = 0, pruned = 0;
+                for (int i = 0; i < hunts; i++){
+                    int cell = store.finalCell[i];
+                    if (cell < 0){
+                        pruned++;
+                        continue;
+                    }
+                    int x = dungeon.rowOf(cell), y = dungeon.columnOf(cell), mana = kernel.fixedPoint(x, y);
+                    boolean peak = cell != 0;
+                    for (int dx = -1; dx <= 1 && peak; dx++){
+                        for (int dy = -1; dy <= 1; dy++){
+                            int nx = x + dx, ny = y + dy;
+                            if (nx >= 0 && nx < rows && ny >= 0 && ny < columns && kernel.fixedPoint(nx, ny) > mana) peak = false;
+                        }
+                    }
+                    if (!peak) notPeaks++;
+                }
+
+                DungeonMapParallel plain = new DungeonMapParallel(-gridSize, gridSize, -gridSize, gridSize, seed);
+                HuntStore plainStore = new HuntStore(hunts, new StartPositions(seed, hunts, rows, columns));
+                int expected = pool.invoke(new DungeonHunterParallel.SearchTask(plainStore, plain, 0, hunts, 64)).max;
+
+                boolean testPassed = notPeaks == 0 && pruned > 0 && max == expected;
+                if (testPassed) passedTests++;
+                System.out.printf("Basin test %d: Grid=%d, Seed=%d -> %d pruned, %d non-peak final cells, best %d (without bound %d) %s\n",
+                        totalTests, gridSize, seed, pruned, notPeaks, max, expected, testPassed ? "✅" : "❌");
+            }
+        }
+        pool.shutdown();
+        System.out.printf("=== BOUND BASIN RESULTS: %d/%d test passed ===\n", passedTests, totalTests);
+    }
+
     public static void validateCorrectness(){
         int totalTests = 0;
         int passedTests = 0;
@@ -0,0 +1,271 @@
+/**
+ * Bridge.java
+ *
+ * Access from the benchmarks to the hunt classes. Those live in the default package and
+ * are mostly package-private, and JMH needs the benchmarks in a named package (its
+ * generated code goes into <package>.jmh_generated), so nothing can be referenced by name:
+ * the classes are loaded by name and their members looked up once with
+ * MethodHandles.privateLookupIn (both sides are in the unnamed module, which opens every
+ * package). Every handle is a static final adapted to Object parameters and called with
+ * invokeExact, so the JIT inlines straight through it into the measured code.
+ */
+
+ package dungeon.bench;
+
+ import java.awt.image.BufferedImage;
+ import java.io.File;
+ import java.lang.invoke.MethodHandle;
+ import java.lang.invoke.MethodHandles;
+ import java.lang.invoke.MethodType;
+ import java.util.concurrent.ForkJoinPool;
+ import java.util.concurrent.ForkJoinTask;
+
+ final class Bridge {
+
+     private static final Class<?> MAP = load("DungeonMapParallel");
+     private static final Class<?> KERNEL = load("ManaKernel");
+     private static final Class<?> MODE = load("ManaKernel$Mode");
+     private static final Class<?> STARTS = load("StartPositions");
+     private static final Class<?> CURSOR = load("StartPositions$Cursor");
+     private static final Class<?> STORE = load("HuntStore");
+     private static final Class<?> HUNT = load("HuntParallel");
+     private static final Class<?> BOUND = load("BranchAndBound");
+     private static final Class<?> SEARCH = load("DungeonHunterParallel$SearchTask");
+     private static final Class<?> RESULT = load("DungeonHunterParallel$SearchResult");
+     private static final Class<?> RENDERER = load("PowerMapRenderer");
+
+     private static final MethodHandle NEW_MAP = constructor(MAP, double.class, double.class, double.class, double.class, int.class);
+     private static final MethodHandle SET_MANA_MODE = method(MAP, "setManaMode", void.class, MODE);
+     private static final MethodHandle ROWS = method(MAP, "getRows", int.class);
+     private static final MethodHandle COLUMNS = method(MAP, "getColumns", int.class);
+     private static final MethodHandle CELL_INDEX = method(MAP, "cellIndex", int.class, int.class, int.class);
+     private static final MethodHandle GET_MANA_LEVEL = method(MAP, "getManaLevel", int.class, int.class);
+     private static final MethodHandle GET_NEXT_STEP = method(MAP, "getNextStep", int.class, int.class);
+     private static final MethodHandle GET_KERNEL = method(MAP, "getKernel", KERNEL);
+     private static final MethodHandle FIXED_POINT = method(KERNEL, "fixedPoint", int.class, int.class, int.class);
+     private static final MethodHandle NEW_STARTS = constructor(STARTS, long.class, int.class, int.class, int.class);
+     private static final MethodHandle STARTS_FROM = method(STARTS, "from", CURSOR, int.class);
+     private static final MethodHandle CURSOR_ROW = method(CURSOR, "row", int.class);
+     private static final MethodHandle CURSOR_COLUMN = method(CURSOR, "column", int.class);
+     private static final MethodHandle CURSOR_ADVANCE = method(CURSOR, "advance", void.class);
+     private static final MethodHandle NEW_STORE = constructor(STORE, int.class, STARTS);
+     private static final MethodHandle NEW_HUNT = constructor(HUNT, STORE, MAP, BOUND);
+     private static final MethodHandle FIND_MANA_PEAK = method(HUNT, "findManaPeak", int.class, int.class, int.class, int.class);
+     private static final MethodHandle NEW_SEARCH = constructor(SEARCH, STORE, MAP, int.class, int.class, int.class);
+     private static final MethodHandle RESULT_MAX = field(RESULT, "max", int.class);
+     private static final MethodHandle NEW_RENDERER = constructor(RENDERER, MAP);
+     private static final MethodHandle RENDER = method(RENDERER, "render", BufferedImage[].class, boolean.class, boolean.class);
+     private static final MethodHandle WRITE_PNG = staticMethod(RENDERER, "writePng", void.class, BufferedImage.class, File.class);
+
+     private Bridge() { }
+
+     private static Class<?> load(String name) {
+         try {
+             return Class.forName(name);
+         } catch (ClassNotFoundException e) {
+             throw new IllegalStateException(name + " is not on the class path - build with make bench-build", e);
+         }
+     }
+
+     private static MethodHandles.Lookup lookupIn(Class<?> type) throws IllegalAccessException {
+         return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+     }
+
+     // every reference type erased to Object, so the call sites need no casts to unnameable types
+     private static MethodHandle erase(MethodHandle handle) {
+         return handle.asType(handle.type().erase());
+     }
+
+     private static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+         try {
+             return erase(lookupIn(type).findConstructor(type, MethodType.methodType(void.class, parameters)));
+         } catch (ReflectiveOperationException e) {
+             throw new IllegalStateException("No constructor " + type.getName() + MethodType.methodType(void.class, parameters), e);
+         }
+     }
+
+     private static MethodHandle method(Class<?> type, String name, Class<?> result, Class<?>... parameters) {
+         try {
+             return erase(lookupIn(type).findVirtual(type, name, MethodType.methodType(result, parameters)));
+         } catch (ReflectiveOperationException e) {
+             throw new IllegalStateException("No method " + type.getName() + "." + name, e);
+         }
+     }
+
+     private static MethodHandle staticMethod(Class<?> type, String name, Class<?> result, Class<?>... parameters) {
+         try {
+             return erase(lookupIn(type).findStatic(type, name, MethodType.methodType(result, parameters)));
+         } catch (ReflectiveOperationException e) {
+             throw new IllegalStateException("No method " + type.getName() + "." + name, e);
+         }
+     }
+
+     private static MethodHandle field(Class<?> type, String name, Class<?> fieldType) {
+         try {
+             return erase(lookupIn(type).findGetter(type, name, fieldType));
+         } catch (ReflectiveOperationException e) {
+             throw new IllegalStateException("No field " + type.getName() + "." + name, e);
+         }
+     }
+
+     private static RuntimeException rethrow(Throwable t) {
+         if (t instanceof RuntimeException) return (RuntimeException) t;
+         if (t instanceof Error) throw (Error) t;
+         return new IllegalStateException(t);
+     }
+
+     /** the dungeon of DungeonHunterParallel <gateSize> ... <seed>, mana mode scalar, vector or fast */
+     static Object newDungeon(int gateSize, int seed, String manaMode) {
+         try {
+             Object map = (Object) NEW_MAP.invokeExact((double) -gateSize, (double) gateSize, (double) -gateSize, (double) gateSize, seed);
+             for (Object mode : MODE.getEnumConstants()) {
+                 if (((Enum<?>) mode).name().equalsIgnoreCase(manaMode)) SET_MANA_MODE.invokeExact(map, mode);
+             }
+             return map;
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** number of hunts DungeonHunterParallel runs at this density */
+     static int hunts(int gateSize, double density) {
+         return (int) (density * (gateSize * 2) * (gateSize * 2) * 5); // DungeonMapParallel.RESOLUTION
+     }
+
+     static int rows(Object map) {
+         try {
+             return (int) ROWS.invokeExact(map);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     static int columns(Object map) {
+         try {
+             return (int) COLUMNS.invokeExact(map);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     static int cellIndex(Object map, int x, int y) {
+         try {
+             return (int) CELL_INDEX.invokeExact(map, x, y);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     static int getManaLevel(Object map, int cell) {
+         try {
+             return (int) GET_MANA_LEVEL.invokeExact(map, cell);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     static int getNextStep(Object map, int cell) {
+         try {
+             return (int) GET_NEXT_STEP.invokeExact(map, cell);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     static Object kernel(Object map) {
+         try {
+             return (Object) GET_KERNEL.invokeExact(map);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** the mana formula getManaLevel evaluates on a miss */
+     static int fixedPoint(Object kernel, int x, int y) {
+         try {
+             return (int) FIXED_POINT.invokeExact(kernel, x, y);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** hunt state for the given number of hunts, starts drawn as DungeonHunterParallel does for seed */
+     static Object newHunts(Object map, int hunts, long seed) {
+         try {
+             Object starts = (Object) NEW_STARTS.invokeExact(seed, hunts, rows(map), columns(map));
+             return (Object) NEW_STORE.invokeExact(hunts, starts);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** {rows, columns} of the start positions for seed */
+     static int[][] startCells(Object map, int hunts, long seed) {
+         try {
+             Object starts = (Object) NEW_STARTS.invokeExact(seed, hunts, rows(map), columns(map));
+             Object cursor = (Object) STARTS_FROM.invokeExact(starts, 0);
+             int[][] cells = new int[2][hunts];
+             for (int i = 0; i < hunts; i++) {
+                 cells[0][i] = (int) CURSOR_ROW.invokeExact(cursor);
+                 cells[1][i] = (int) CURSOR_COLUMN.invokeExact(cursor);
+                 CURSOR_ADVANCE.invokeExact(cursor);
+             }
+             return cells;
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     static Object newHunt(Object store, Object map) {
+         try {
+             return (Object) NEW_HUNT.invokeExact(store, map, (Object) null);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     static int findManaPeak(Object hunt, int index, int row, int column) {
+         try {
+             return (int) FIND_MANA_PEAK.invokeExact(hunt, index, row, column);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** all hunts of store as one SearchTask recursion in pool; the best peak's mana */
+     static int search(ForkJoinPool pool, Object store, Object map, int hunts, int threshold) {
+         try {
+             ForkJoinTask<?> task = (ForkJoinTask<?>) (Object) NEW_SEARCH.invokeExact(store, map, 0, hunts, threshold);
+             return (int) RESULT_MAX.invokeExact((Object) pool.invoke(task));
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** PowerMapRenderer: mana range and colour table */
+     static Object newRenderer(Object map) {
+         try {
+             return (Object) NEW_RENDERER.invokeExact(map);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** both power map images, drawn but not encoded */
+     static BufferedImage[] render(Object renderer) {
+         try {
+             return (BufferedImage[]) (Object) RENDER.invokeExact(renderer, true, true);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+
+     /** PNG encoding as visualisePowerMap does it */
+     static void writePng(BufferedImage image, File file) {
+         try {
+             WRITE_PNG.invokeExact((Object) image, (Object) file);
+         } catch (Throwable t) {
+             throw rethrow(t);
+         }
+     }
+ }
@@ -0,0 +1,67 @@
+/**
+ * HuntBenchmark.java
+ *
+ * HuntParallel.findManaPeak on one thread: every hunt of a dungeon at the given density,
+ * in index order, on a fresh grid per invocation - so later hunts join earlier paths at
+ * the rate a real run sees. The score is the time for all of them; divide by the hunt
+ * count printed in the setup for a per-hunt figure. With -prof gc the bytes per operation
+ * include the fresh grid, 8 bytes per cell.
+ */
+
+ package dungeon.bench;
+
+ import org.openjdk.jmh.annotations.Benchmark;
+ import org.openjdk.jmh.annotations.BenchmarkMode;
+ import org.openjdk.jmh.annotations.Fork;
+ import org.openjdk.jmh.annotations.Level;
+ import org.openjdk.jmh.annotations.Measurement;
+ import org.openjdk.jmh.annotations.Mode;
+ import org.openjdk.jmh.annotations.OutputTimeUnit;
+ import org.openjdk.jmh.annotations.Param;
+ import org.openjdk.jmh.annotations.Scope;
+ import org.openjdk.jmh.annotations.Setup;
+ import org.openjdk.jmh.annotations.State;
+ import org.openjdk.jmh.annotations.Warmup;
+
+ import java.util.concurrent.TimeUnit;
+
+ @BenchmarkMode(Mode.AverageTime)
+ @OutputTimeUnit(TimeUnit.MILLISECONDS)
+ @Warmup(iterations = 3, time = 2)
+ @Measurement(iterations = 5, time = 2)
+ @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign,jdk.incubator.vector"})
+ @State(Scope.Thread)
+ public class HuntBenchmark {
+
+     @Param({"100"})
+     int gridSize;
+
+     @Param({"0.05", "0.2"})
+     double density;
+
+     int hunts;
+     int[][] starts;
+     Object dungeon, store, hunt;
+
+     @Setup(Level.Trial)
+     public void starts() {
+         hunts = Bridge.hunts(gridSize, density);
+         starts = Bridge.startCells(Bridge.newDungeon(gridSize, 1, "scalar"), hunts, 1);
+         System.out.println("\n" + hunts + " hunts per invocation");
+     }
+
+     // a run's worth of hunts takes milliseconds, so per-invocation setup does not distort it
+     @Setup(Level.Invocation)
+     public void freshGrid() {
+         dungeon = Bridge.newDungeon(gridSize, 1, "scalar");
+         store = Bridge.newHunts(dungeon, hunts, 1);
+         hunt = Bridge.newHunt(store, dungeon);
+     }
+
+     @Benchmark
+     public int findManaPeak() {
+         int best = Integer.MIN_VALUE;
+         for (int i = 0; i < hunts; i++) best = Math.max(best, Bridge.findManaPeak(hunt, i, starts[0][i], starts[1][i]));
+         return best;
+     }
+ }
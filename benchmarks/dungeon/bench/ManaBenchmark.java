@@ -0,0 +1,71 @@
+/**
+ * ManaBenchmark.java
+ *
+ * Mana lookups: DungeonMapParallel.getManaLevel on cells already evaluated (the common
+ * case once hunts overlap - one acquire load), and the formula it evaluates on a miss
+ * (ManaKernel.fixedPoint). Cells are visited in a fixed pseudo-random order over the
+ * whole grid, so larger grids show the cache misses of the grid planes.
+ */
+
+ package dungeon.bench;
+
+ import org.openjdk.jmh.annotations.Benchmark;
+ import org.openjdk.jmh.annotations.BenchmarkMode;
+ import org.openjdk.jmh.annotations.Fork;
+ import org.openjdk.jmh.annotations.Measurement;
+ import org.openjdk.jmh.annotations.Mode;
+ import org.openjdk.jmh.annotations.OutputTimeUnit;
+ import org.openjdk.jmh.annotations.Param;
+ import org.openjdk.jmh.annotations.Scope;
+ import org.openjdk.jmh.annotations.Setup;
+ import org.openjdk.jmh.annotations.State;
+ import org.openjdk.jmh.annotations.Warmup;
+
+ import java.util.Random;
+ import java.util.concurrent.TimeUnit;
+
+ @BenchmarkMode(Mode.AverageTime)
+ @OutputTimeUnit(TimeUnit.NANOSECONDS)
+ @Warmup(iterations = 3, time = 1)
+ @Measurement(iterations = 5, time = 1)
+ @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign,jdk.incubator.vector"})
+ @State(Scope.Thread)
+ public class ManaBenchmark {
+
+     static final int SAMPLES = 1 << 16; // cells cycled through, a power of two
+
+     @Param({"100", "500"})
+     int gridSize;
+
+     Object dungeon, kernel;
+     int[] cells, xs, ys;
+     int next;
+
+     @Setup
+     public void setup() {
+         dungeon = Bridge.newDungeon(gridSize, 1, "scalar");
+         kernel = Bridge.kernel(dungeon);
+         int rows = Bridge.rows(dungeon), columns = Bridge.columns(dungeon);
+         Random random = new Random(42);
+         cells = new int[SAMPLES];
+         xs = new int[SAMPLES];
+         ys = new int[SAMPLES];
+         for (int i = 0; i < SAMPLES; i++) {
+             xs[i] = random.nextInt(rows);
+             ys[i] = random.nextInt(columns);
+             cells[i] = Bridge.cellIndex(dungeon, xs[i], ys[i]);
+             Bridge.getManaLevel(dungeon, cells[i]); //evaluated and published before measuring
+         }
+     }
+
+     @Benchmark
+     public int getManaLevelEvaluated() {
+         return Bridge.getManaLevel(dungeon, cells[next++ & (SAMPLES - 1)]);
+     }
+
+     @Benchmark
+     public int fixedPoint() {
+         int i = next++ & (SAMPLES - 1);
+         return Bridge.fixedPoint(kernel, xs[i], ys[i]);
+     }
+ }
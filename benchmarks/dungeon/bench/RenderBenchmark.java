@@ -0,0 +1,78 @@
+/**
+ * RenderBenchmark.java
+ *
+ * The parts of visualisePowerMap(s), on the grid one search left behind: the mana range
+ * and colour table (new PowerMapRenderer), drawing both images, and encoding one as PNG.
+ * The PNG goes to a temporary file; nothing is printed.
+ */
+
+ package dungeon.bench;
+
+ import org.openjdk.jmh.annotations.Benchmark;
+ import org.openjdk.jmh.annotations.BenchmarkMode;
+ import org.openjdk.jmh.annotations.Fork;
+ import org.openjdk.jmh.annotations.Measurement;
+ import org.openjdk.jmh.annotations.Mode;
+ import org.openjdk.jmh.annotations.OutputTimeUnit;
+ import org.openjdk.jmh.annotations.Param;
+ import org.openjdk.jmh.annotations.Scope;
+ import org.openjdk.jmh.annotations.Setup;
+ import org.openjdk.jmh.annotations.State;
+ import org.openjdk.jmh.annotations.TearDown;
+ import org.openjdk.jmh.annotations.Warmup;
+
+ import java.awt.image.BufferedImage;
+ import java.io.File;
+ import java.io.IOException;
+ import java.util.concurrent.ForkJoinPool;
+ import java.util.concurrent.TimeUnit;
+
+ @BenchmarkMode(Mode.AverageTime)
+ @OutputTimeUnit(TimeUnit.MILLISECONDS)
+ @Warmup(iterations = 3, time = 2)
+ @Measurement(iterations = 5, time = 2)
+ @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign,jdk.incubator.vector"})
+ @State(Scope.Benchmark)
+ public class RenderBenchmark {
+
+     @Param({"100", "300"})
+     int gridSize;
+
+     @Param({"0.2"})
+     double density;
+
+     Object dungeon, renderer;
+     BufferedImage map;
+     File png;
+
+     @Setup
+     public void searched() throws IOException {
+         dungeon = Bridge.newDungeon(gridSize, 1, "scalar");
+         int hunts = Bridge.hunts(gridSize, density);
+         Bridge.search(ForkJoinPool.commonPool(), Bridge.newHunts(dungeon, hunts, 1), dungeon, hunts, 1024);
+         renderer = Bridge.newRenderer(dungeon);
+         map = Bridge.render(renderer)[0];
+         png = File.createTempFile("power-map", ".png");
+     }
+
+     @TearDown
+     public void delete() {
+         png.delete();
+     }
+
+     @Benchmark
+     public Object colourTable() {
+         return Bridge.newRenderer(dungeon);
+     }
+
+     @Benchmark
+     public BufferedImage[] drawBoth() {
+         return Bridge.render(renderer);
+     }
+
+     @Benchmark
+     public long encodePng() {
+         Bridge.writePng(map, png);
+         return png.length();
+     }
+ }
@@ -0,0 +1,74 @@
+/**
+ * SearchBenchmark.java
+ *
+ * A whole parallel search: one DungeonHunterParallel.SearchTask over all hunts of a fresh
+ * dungeon, in a ForkJoinPool of the given size, across leaf thresholds (hunts per leaf
+ * task) - the same work main times, without its setup and output. With -prof gc the bytes
+ * per operation include the fresh grid, 8 bytes per cell.
+ */
+
+ package dungeon.bench;
+
+ import org.openjdk.jmh.annotations.Benchmark;
+ import org.openjdk.jmh.annotations.BenchmarkMode;
+ import org.openjdk.jmh.annotations.Fork;
+ import org.openjdk.jmh.annotations.Level;
+ import org.openjdk.jmh.annotations.Measurement;
+ import org.openjdk.jmh.annotations.Mode;
+ import org.openjdk.jmh.annotations.OutputTimeUnit;
+ import org.openjdk.jmh.annotations.Param;
+ import org.openjdk.jmh.annotations.Scope;
+ import org.openjdk.jmh.annotations.Setup;
+ import org.openjdk.jmh.annotations.State;
+ import org.openjdk.jmh.annotations.TearDown;
+ import org.openjdk.jmh.annotations.Warmup;
+
+ import java.util.concurrent.ForkJoinPool;
+ import java.util.concurrent.TimeUnit;
+
+ @BenchmarkMode(Mode.AverageTime)
+ @OutputTimeUnit(TimeUnit.MILLISECONDS)
+ @Warmup(iterations = 3, time = 2)
+ @Measurement(iterations = 5, time = 2)
+ @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign,jdk.incubator.vector"})
+ @State(Scope.Benchmark)
+ public class SearchBenchmark {
+
+     @Param({"100", "300"})
+     int gridSize;
+
+     @Param({"0.2"})
+     double density;
+
+     @Param({"1", "2", "4"})
+     int threads;
+
+     @Param({"64", "512", "4096"})
+     int threshold;
+
+     ForkJoinPool pool;
+     int hunts;
+     Object dungeon, store;
+
+     @Setup(Level.Trial)
+     public void pool() {
+         pool = new ForkJoinPool(threads);
+         hunts = Bridge.hunts(gridSize, density);
+     }
+
+     @Setup(Level.Invocation)
+     public void freshGrid() {
+         dungeon = Bridge.newDungeon(gridSize, 1, "scalar");
+         store = Bridge.newHunts(dungeon, hunts, 1);
+     }
+
+     @TearDown(Level.Trial)
+     public void shutdown() {
+         pool.shutdown();
+     }
+
+     @Benchmark
+     public int searchTask() {
+         return Bridge.search(pool, store, dungeon, hunts, threshold);
+     }
+ }
@@ -0,0 +1,59 @@
+/**
+ * StepBenchmark.java
+ *
+ * One hill-climbing step, DungeonMapParallel.getNextStep (the flat-index successor of
+ * getNextStepDirection), from pseudo-random cells of a 1000x1000 grid in each mana mode.
+ * Run with -prof gc to see the allocation per step, which should be ~0 B/op in every mode.
+ */
+
+ package dungeon.bench;
+
+ import org.openjdk.jmh.annotations.Benchmark;
+ import org.openjdk.jmh.annotations.BenchmarkMode;
+ import org.openjdk.jmh.annotations.Fork;
+ import org.openjdk.jmh.annotations.Measurement;
+ import org.openjdk.jmh.annotations.Mode;
+ import org.openjdk.jmh.annotations.OutputTimeUnit;
+ import org.openjdk.jmh.annotations.Param;
+ import org.openjdk.jmh.annotations.Scope;
+ import org.openjdk.jmh.annotations.Setup;
+ import org.openjdk.jmh.annotations.State;
+ import org.openjdk.jmh.annotations.Warmup;
+
+ import java.util.Random;
+ import java.util.concurrent.TimeUnit;
+
+ @BenchmarkMode(Mode.AverageTime)
+ @OutputTimeUnit(TimeUnit.NANOSECONDS)
+ @Warmup(iterations = 3, time = 1)
+ @Measurement(iterations = 5, time = 1)
+ @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign,jdk.incubator.vector"})
+ @State(Scope.Thread)
+ public class StepBenchmark {
+
+     static final int SAMPLES = 1 << 16; // start cells cycled through, a power of two
+
+     @Param({"100"})
+     int gridSize;
+
+     @Param({"scalar", "fast"})
+     String mana;
+
+     Object dungeon;
+     int[] cells;
+     int next;
+
+     @Setup
+     public void setup() {
+         dungeon = Bridge.newDungeon(gridSize, 1, mana);
+         int rows = Bridge.rows(dungeon), columns = Bridge.columns(dungeon);
+         Random random = new Random(42);
+         cells = new int[SAMPLES];
+         for (int i = 0; i < SAMPLES; i++) cells[i] = Bridge.cellIndex(dungeon, random.nextInt(rows), random.nextInt(columns));
+     }
+
+     @Benchmark
+     public int getNextStep() {
+         return Bridge.getNextStep(dungeon, cells[next++ & (SAMPLES - 1)]);
+     }
+ }